@@ -0,0 +1,65 @@
+package ch.streamly.chronicle.flux;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * Throughput of the append path: a single value with {@code store(I)}, and a stream of values with
+ * {@code store(Publisher)}, for the encodings of the store and of the journal.
+ *
+ * @author mgabriel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AppendBenchmark {
+    private static final int VALUES_PER_PUBLISHER = 1000;
+
+    @Param({BenchmarkStores.STORE, BenchmarkStores.JOURNAL, BenchmarkStores.JOURNAL_NANOS})
+    private String kind;
+
+    @Param({"64", "1024"})
+    private int payloadSize;
+
+    @Param({"DAILY", "MINUTELY"})
+    private String rollCycle;
+
+    private AbstractChronicleStore<byte[], ?> store;
+    private Flux<byte[]> values;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() {
+        store = BenchmarkStores.create(kind, rollCycle, WaitStrategy.yielding());
+        payload = BenchmarkStores.payload(payloadSize);
+        values = Flux.range(0, VALUES_PER_PUBLISHER).map(i -> payload);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkStores.close(store);
+    }
+
+    @Benchmark
+    public void storeValue() {
+        store.store(payload);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES_PER_PUBLISHER)
+    public void storePublisher() {
+        store.store(values);
+    }
+}
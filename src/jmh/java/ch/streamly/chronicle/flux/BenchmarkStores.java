@@ -0,0 +1,84 @@
+package ch.streamly.chronicle.flux;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import net.openhft.chronicle.queue.RollCycles;
+
+/**
+ * Creates the stores used by the benchmarks in temporary directories.
+ *
+ * @author mgabriel.
+ */
+final class BenchmarkStores {
+    static final String STORE = "store";
+    static final String JOURNAL = "journal";
+    static final String JOURNAL_NANOS = "journalNanos";
+
+    private BenchmarkStores() {
+    }
+
+    /**
+     * @param kind      {@link #STORE}, {@link #JOURNAL} or {@link #JOURNAL_NANOS}.
+     * @param rollCycle name of a {@link RollCycles} constant.
+     * @return a store of byte arrays, written as is.
+     */
+    static AbstractChronicleStore<byte[], ?> create(String kind, String rollCycle, WaitStrategy waitStrategy) {
+        String path = createDirectory().toString();
+        switch (kind) {
+            case STORE:
+                return ChronicleStore.<byte[]>newBuilder()
+                        .path(path)
+                        .serializer(Function.identity())
+                        .deserializer(Function.identity())
+                        .rollCycle(RollCycles.valueOf(rollCycle))
+                        .waitStrategy(waitStrategy)
+                        .build();
+            case JOURNAL:
+            case JOURNAL_NANOS:
+                ChronicleJournal.ChronicleJournalBuilder<byte[]> builder = ChronicleJournal.<byte[]>newBuilder()
+                        .path(path)
+                        .serializer(Function.identity())
+                        .deserializer(Function.identity())
+                        .rollCycle(RollCycles.valueOf(rollCycle))
+                        .waitStrategy(waitStrategy);
+                return JOURNAL_NANOS.equals(kind) ? builder.nanoTimestamps().build() : builder.build();
+            default:
+                throw new IllegalArgumentException("Unknown store kind " + kind);
+        }
+    }
+
+    static byte[] payload(int size) {
+        byte[] payload = new byte[size];
+        for (int i = 0; i < size; i++) {
+            payload[i] = (byte) i;
+        }
+        return payload;
+    }
+
+    static void close(AbstractChronicleStore<?, ?> store) {
+        store.close();
+        delete(store.queue().file().toPath());
+    }
+
+    private static Path createDirectory() {
+        try {
+            return Files.createTempDirectory("chronicle-flux-jmh");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void delete(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
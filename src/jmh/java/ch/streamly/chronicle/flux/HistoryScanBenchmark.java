@@ -0,0 +1,58 @@
+package ch.streamly.chronicle.flux;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * Scan rate of {@code retrieveHistory()}, which includes the decoding of the records of the store and of the journal.
+ * The score is the number of values read per second.
+ *
+ * @author mgabriel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class HistoryScanBenchmark {
+    private static final int VALUES = 100_000;
+
+    @Param({BenchmarkStores.STORE, BenchmarkStores.JOURNAL, BenchmarkStores.JOURNAL_NANOS})
+    private String kind;
+
+    @Param({"64", "1024"})
+    private int payloadSize;
+
+    @Param({"DAILY", "MINUTELY"})
+    private String rollCycle;
+
+    private AbstractChronicleStore<byte[], ?> store;
+
+    @Setup
+    public void setUp() {
+        store = BenchmarkStores.create(kind, rollCycle, WaitStrategy.yielding());
+        byte[] payload = BenchmarkStores.payload(payloadSize);
+        store.store(Flux.range(0, VALUES).map(i -> payload));
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkStores.close(store);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public long scanHistory() {
+        return store.retrieveHistory().count().block();
+    }
+}
@@ -0,0 +1,81 @@
+package ch.streamly.chronicle.flux;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import reactor.core.Disposable;
+
+/**
+ * Latency between the append of a value and its reception by a subscriber of {@code retrieveNewValues()}.
+ * The benchmark thread appends a value and spins until the subscriber has received it,
+ * the sampled times give the percentiles of the round trip.
+ * Both threads spin, the benchmark needs at least two available cores.
+ *
+ * @author mgabriel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NewValuesLatencyBenchmark {
+
+    @Param({BenchmarkStores.STORE, BenchmarkStores.JOURNAL})
+    private String kind;
+
+    @Param({"64", "1024"})
+    private int payloadSize;
+
+    @Param({"busySpin", "yielding"})
+    private String waitStrategy;
+
+    private AbstractChronicleStore<byte[], ?> store;
+    private Disposable subscription;
+    private byte[] payload;
+    private long sent;
+    private volatile long received;
+
+    @Setup
+    public void setUp() {
+        store = BenchmarkStores.create(kind, "DAILY",
+                "busySpin".equals(waitStrategy) ? WaitStrategy.busySpin() : WaitStrategy.yielding());
+        payload = BenchmarkStores.payload(payloadSize);
+        subscription = store.retrieveNewValues().subscribe(v -> received++);
+        // the values appended before the tailer reaches the end of the store are not received
+        while (received == 0) {
+            store.store(payload);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        // the values appended while waiting may still be in flight, wait until they are all received
+        long before;
+        do {
+            before = received;
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+        } while (received != before);
+        sent = received;
+    }
+
+    @TearDown
+    public void tearDown() {
+        subscription.dispose();
+        BenchmarkStores.close(store);
+    }
+
+    @Benchmark
+    public long appendToReceive() {
+        long expected = ++sent;
+        store.store(payload);
+        while (received < expected) {
+            // spin until the subscriber receives the value
+        }
+        return expected;
+    }
+}
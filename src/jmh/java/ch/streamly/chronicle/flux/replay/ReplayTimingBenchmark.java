@@ -0,0 +1,72 @@
+package ch.streamly.chronicle.flux.replay;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import ch.streamly.chronicle.flux.metrics.LogHistogram;
+import reactor.core.publisher.Flux;
+
+/**
+ * Scheduling accuracy of {@link ReplayWithOriginalTiming}: values timed at a fixed interval are replayed and
+ * the error between the time each value is emitted and the time it should have been emitted is recorded.
+ * The score is the duration of a replay, the percentiles of the delays and the number of early emissions
+ * are printed at the end of each iteration.
+ *
+ * @author mgabriel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ReplayTimingBenchmark {
+    private static final int VALUES = 1000;
+
+    @Param({"10", "100", "1000"})
+    private long intervalMicros;
+
+    private final LogHistogram delayNanos = new LogHistogram();
+    private Flux<Long> replay;
+    private long firstEmission;
+
+    @Setup
+    public void setUp() {
+        long intervalNanos = TimeUnit.MICROSECONDS.toNanos(intervalMicros);
+        replay = Flux.range(0, VALUES)
+                .map(i -> i * intervalNanos)
+                .transform(new ReplayWithOriginalTiming<>(Long::longValue, TimeUnit.NANOSECONDS, 1));
+    }
+
+    @Setup(Level.Iteration)
+    public void resetDelays() {
+        delayNanos.reset();
+    }
+
+    @TearDown(Level.Iteration)
+    public void printDelays() {
+        System.out.println("replay delays (ns): " + delayNanos.snapshot()
+                + ", early emissions: " + delayNanos.negativeCount());
+    }
+
+    @Benchmark
+    public Long replay() {
+        return replay.doOnNext(this::recordDelay).blockLast();
+    }
+
+    private void recordDelay(long timestamp) {
+        long now = System.nanoTime();
+        if (timestamp == 0) {
+            firstEmission = now;
+        } else {
+            delayNanos.record(now - firstEmission - timestamp); // an early emission is counted as negative
+        }
+    }
+}
@@ -1,26 +1,45 @@
 package ch.streamly.chronicle.flux;
 
-import static java.util.concurrent.TimeUnit.MILLISECONDS;
-
 import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import ch.streamly.chronicle.flux.TailerSubscription.CycleListener;
+import ch.streamly.chronicle.flux.TailerSubscription.ExcerptReader;
+import ch.streamly.chronicle.flux.TailerSubscription.PositionListener;
+import ch.streamly.chronicle.flux.metrics.StoreMetrics;
+import ch.streamly.chronicle.flux.metrics.StoreStats;
+import ch.streamly.chronicle.flux.metrics.StoreStats.StoreStatsBuilder;
 import ch.streamly.chronicle.flux.replay.ReplayFlux;
+import net.openhft.chronicle.bytes.Bytes;
 import net.openhft.chronicle.bytes.BytesIn;
 import net.openhft.chronicle.queue.ExcerptAppender;
 import net.openhft.chronicle.queue.ExcerptTailer;
 import net.openhft.chronicle.queue.RollCycle;
 import net.openhft.chronicle.queue.RollCycles;
-import net.openhft.chronicle.queue.impl.WireStore;
+import net.openhft.chronicle.queue.impl.RollingResourcesCache;
 import net.openhft.chronicle.queue.impl.single.SingleChronicleQueue;
 import net.openhft.chronicle.queue.impl.single.SingleChronicleQueueBuilder;
+import net.openhft.chronicle.wire.DocumentContext;
 import org.reactivestreams.Publisher;
+import reactor.core.CoreSubscriber;
 import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.publisher.ParallelFlux;
 
 /**
  * Implementation of a {@link FluxStore} backed by a Chronicle Queue.
@@ -30,17 +49,50 @@ import reactor.core.publisher.FluxSink;
  */
 public abstract class AbstractChronicleStore<I, O> implements FluxStore<I, O> {
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractChronicleStore.class);
+    protected final ValueMarshaller<I> marshaller;
+    /**
+     * @deprecated the values are read with the {@link #marshaller}, this function delegates to it.
+     */
+    @Deprecated
     protected final Function<byte[], I> deserializer;
-    private final Function<I, byte[]> serializer;
     private final SingleChronicleQueue queue;
     private final RollCycle rollCycle;
+    private final TailerRuntime runtime;
+    private final boolean ownsRuntime;
+    private final int maxBatchSize;
+    private final Duration maxBatchLinger;
+    private final int maxBatchBytes;
+    private final AsyncAppender<I> asyncAppender;
+    private final ConcurrentMap<String, ConsumerCheckpoint> consumers = new ConcurrentHashMap<>();
+    private final ActiveReaders activeReaders = new ActiveReaders();
+    private final RetentionManager retention;
+    private final SharedTail<O> sharedTail;
+    private final StoreMetrics metrics;
+    private final boolean metricsEnabled;
+    private RollingResourcesCache cycleFiles;
+    private ExcerptTailer endTailer;
 
     protected <S extends AbstractChronicleStore<I, O>, B extends AbstractChronicleStoreBuilder<B, S, I>> AbstractChronicleStore(
             AbstractChronicleStoreBuilder<B, S, I> builder) {
-        serializer = builder.serializer;
-        deserializer = builder.deserializer;
+        marshaller = builder.marshaller != null ? builder.marshaller :
+                ValueMarshaller.fromByteArrays(builder.serializer, builder.deserializer);
+        deserializer = bytes -> marshaller.read(Bytes.wrapForRead(bytes));
         rollCycle = builder.rollCycle;
+        ownsRuntime = builder.runtime == null;
+        runtime = ownsRuntime ? TailerRuntime.newRuntime(builder.readerThreads, builder.waitStrategy) : builder.runtime;
+        maxBatchSize = builder.maxBatchSize;
+        maxBatchLinger = builder.maxBatchLinger;
+        maxBatchBytes = builder.maxBatchBytes;
+        metrics = builder.metrics;
+        metricsEnabled = metrics.isEnabled();
         this.queue = createQueue(builder.path);
+        asyncAppender = builder.asyncCapacity > 0 ?
+                new AsyncAppender<>(queue, this::serialize, builder.asyncCapacity, builder.overflowPolicy,
+                        builder.waitStrategy, runtime::signal) : null;
+        retention = new RetentionManager(queue, rollCycle, activeReaders, this::cycles, builder.retentionPolicy, metrics);
+        sharedTail = new SharedTail<>(() -> indexedFlux("shared", ExcerptTailer::toEnd, false),
+                position -> indexedFlux("shared", tailer -> moveAtOrAfter(tailer, position.index), false),
+                runtime::disposedError);
     }
 
     //package private for testing
@@ -49,132 +101,564 @@ public abstract class AbstractChronicleStore<I, O> implements FluxStore<I, O> {
     }
 
     void close() {
+        sharedTail.dispose();
+        if (asyncAppender != null) {
+            asyncAppender.dispose();
+        }
+        if (ownsRuntime) {
+            runtime.dispose();
+        }
+        consumers.values().forEach(ConsumerCheckpoint::close);
+        retention.dispose();
         queue.close();
     }
 
     @Override
     public Disposable store(Publisher<I> toStore) {
+        Flux<I> source = Flux.from(toStore)
+                .doOnError(err -> LOGGER.error("Error received", err));
+        if (maxBatchSize > 1) {
+            return source.bufferTimeout(maxBatchSize, maxBatchLinger)
+                    .subscribe(this::storeBatch);
+        }
         ExcerptAppender appender = queue.acquireAppender();
-        return Flux.from(toStore)
-                .doOnError(err -> LOGGER.error("Error received", err))
-                .subscribe(v -> storeValue(appender, v));
+        return source.subscribe(v -> storeValue(appender, v));
     }
 
     private void storeValue(ExcerptAppender appender, I v) {
-        byte[] bytesToStore = serializeValue(v);
-        appender.writeBytes(b -> b.writeInt(bytesToStore.length).write(bytesToStore));
+        DocumentContext dc = appender.writingDocument();
+        try {
+            serialize(dc.wire().bytes(), v);
+        } catch (RuntimeException e) {
+            dc.rollbackOnClose();
+            throw e;
+        } finally {
+            dc.close();
+        }
+        runtime.signal();
     }
 
+    private void storeBatch(List<I> batch) {
+        ExcerptAppender appender = queue.acquireAppender();
+        int next = 0;
+        while (next < batch.size()) {
+            next = storeBatchDocument(appender, batch, next);
+        }
+        runtime.signal();
+    }
+
+    /**
+     * Writes the values of a batch in a single excerpt, until the excerpt reaches the maximum batch size in bytes.
+     *
+     * @return the index of the first value of the batch that has not been written.
+     */
+    private int storeBatchDocument(ExcerptAppender appender, List<I> batch, int first) {
+        int next = first;
+        DocumentContext dc = appender.writingDocument();
+        try {
+            Bytes<?> bytes = dc.wire().bytes();
+            long start = bytes.writePosition();
+            do {
+                serialize(bytes, batch.get(next++));
+            } while (next < batch.size() && bytes.writePosition() - start < maxBatchBytes);
+        } catch (RuntimeException e) {
+            dc.rollbackOnClose();
+            throw e;
+        } finally {
+            dc.close();
+        }
+        return next;
+    }
+
+    private void serialize(Bytes<?> bytes, I value) {
+        if (!metricsEnabled) {
+            writeValue(bytes, value);
+            return;
+        }
+        long start = System.nanoTime();
+        long position = bytes.writePosition();
+        writeValue(bytes, value);
+        metrics.onAppend(bytes.writePosition() - position, System.nanoTime() - start);
+    }
+
+    /**
+     * Writes a value in an excerpt, by default as its length followed by its serialized bytes.
+     *
+     * @param bytes bytes of the excerpt.
+     * @param value value to write.
+     */
+    protected void writeValue(Bytes<?> bytes, I value) {
+        long lengthPosition = bytes.writePosition();
+        bytes.writeInt(0);
+        marshaller.write(bytes, value);
+        bytes.writeInt(lengthPosition, (int) (bytes.writePosition() - lengthPosition - Integer.BYTES));
+    }
+
+    /**
+     * @param v value to serialize.
+     * @return the value serialized by the {@link #marshaller}.
+     * @deprecated the values are written directly in the queue by {@link #writeValue(Bytes, Object)}, which does not
+     * call this method: override {@link #writeValue(Bytes, Object)} to change how the values are written.
+     */
+    @Deprecated
     protected byte[] serializeValue(I v) {
-        return serializer.apply(v);
+        Bytes<?> bytes = Bytes.elasticHeapByteBuffer(256);
+        try {
+            marshaller.write(bytes, v);
+            return bytes.toByteArray();
+        } finally {
+            bytes.release();
+        }
     }
 
+    /**
+     * Reads a value written by {@link #writeValue(Bytes, Object)}, without copying it out of the queue.
+     *
+     * @param rawData bytes of the excerpt.
+     * @return the deserialized value.
+     */
+    protected I readValue(BytesIn<?> rawData) {
+        int size = rawData.readInt();
+        return readValue(rawData, size);
+    }
+
+    /**
+     * @param rawData bytes of the excerpt.
+     * @param size    size of the serialized value.
+     * @return the value deserialized from the next {@code size} bytes.
+     */
+    protected final I readValue(BytesIn<?> rawData, int size) {
+        long limit = rawData.readLimit();
+        long end = rawData.readPosition() + size;
+        rawData.readLimit(end);
+        try {
+            return marshaller.read(rawData);
+        } finally {
+            rawData.readLimit(limit);
+            rawData.readPosition(end);
+        }
+    }
+
+    /**
+     * Stores one item. If the asynchronous appender is enabled, the item is serialized and enqueued on the caller
+     * thread, and written later by the appender thread.
+     *
+     * @param item item to store.
+     */
     @Override
     public void store(I item) {
-        ExcerptAppender appender = queue.acquireAppender();
-        storeValue(appender, item);
+        if (asyncAppender != null) {
+            asyncAppender.append(item, null);
+        } else {
+            ExcerptAppender appender = queue.acquireAppender();
+            storeValue(appender, item);
+        }
+    }
+
+    /**
+     * Stores one item and signals when it has been written.
+     *
+     * @param item item to store.
+     * @return a Mono that completes once the item is written in the queue,
+     * or fails if the item could not be written (e.g. dropped by the asynchronous appender).
+     */
+    public Mono<Void> storeAsync(I item) {
+        if (asyncAppender == null) {
+            store(item);
+            return Mono.empty();
+        }
+        MonoProcessor<Void> completion = MonoProcessor.create();
+        asyncAppender.append(item, completion);
+        return completion;
+    }
+
+    /**
+     * @return a Mono that completes once all the items stored before this call are written in the queue.
+     */
+    public Mono<Void> flush() {
+        return asyncAppender == null ? Mono.empty() : asyncAppender.flush();
     }
 
     @Override
     public Flux<O> retrieveAll(boolean deleteAfterRead) {
-        return Flux.create(sink -> launchTailer(sink, ReaderType.ALL, deleteAfterRead));
+        return tailerFlux("all", this::createTailerAtStart, false,
+                deleteAfterRead ? retention::deletePassedCycles : CycleListener.NONE);
     }
 
-    private void launchTailer(FluxSink<O> sink, ReaderType readerType, boolean deleteAfterRead) {
-        launchTailer(sink, queue.createTailer(), readerType, deleteAfterRead);
+    /**
+     * Retrieves the values from the last position of a durable named consumer, followed by the new values.
+     * The position is saved when the values have been emitted (once {@code onNext} returns),
+     * it is not saved for each value but once per batch of emitted values.
+     * After a restart, a few values may be emitted again, but no value is missed as long as the values are
+     * processed synchronously in {@code onNext}: with an asynchronous processing (e.g. {@code publishOn}
+     * or {@code flatMap}), use {@link #retrieveAllWithAcks(String)}.
+     * A consumer can only be subscribed once at a time.
+     *
+     * @param consumerName name of the consumer (letters, digits, '_', '.' and '-').
+     * @return the values not yet read by the consumer, and the new values being stored in this store.
+     */
+    public Flux<O> retrieveAll(String consumerName) {
+        return retrieveAll(consumerName, this::deserializeValue);
     }
 
-    private void launchTailer(FluxSink<O> sink, ExcerptTailer tailer, ReaderType readerType, boolean deleteAfterRead) {
-        String path = tailer.queue().file().getAbsolutePath();
-        Thread t = new Thread(
-                () -> readTailer(tailer, sink, readerType, deleteAfterRead),
-                "ChronicleStoreRetrieve_" + path);
-        t.setDaemon(true);
-        t.start();
+    /**
+     * Same as {@link #retrieveAll(String)}, the values are read with the given reader instead of {@link #deserializeValue(BytesIn)}.
+     */
+    protected Flux<O> retrieveAll(String consumerName, Function<BytesIn, O> reader) {
+        return consumerFlux(consumerName, checkpoint -> checkpoint,
+                checkpoint -> (bytes, index) -> deserialize(bytes, reader));
     }
 
-    private void readTailer(ExcerptTailer tailer, FluxSink<O> sink,
-            ReaderType readerType, boolean deleteAfterRead) {
-        int previousCycle = 0;
-        try {
-            while (!sink.isCancelled()) {
-                if (sink.requestedFromDownstream() > 0) {
-                    boolean present = tailer.readBytes(b ->
-                            sink.next(deserializeValue(b)));
-                    if (!present) {
-                        if (readerType == ReaderType.ONLY_HISTORY) {
-                            sink.complete();
-                        } else {
-                            waitMillis(10); // wait for values to appear on the queue
-                        }
-                    }
-                } else {
-                    waitMillis(100); // wait for requests
+    /**
+     * Same as {@link #retrieveAll(String)}, but the position of the consumer is only saved when the values are
+     * acknowledged, once they have been processed. Acknowledging a value also acknowledges all the values before it.
+     * After a restart, the values not acknowledged are emitted again
+     * (as well as the values stored in the same batch as the last value acknowledged).
+     *
+     * @param consumerName name of the consumer (letters, digits, '_', '.' and '-').
+     * @return the values not yet acknowledged by the consumer, and the new values being stored in this store.
+     */
+    public Flux<AcknowledgeableValue<O>> retrieveAllWithAcks(String consumerName) {
+        return consumerFlux(consumerName, ConsumerCheckpoint::acknowledgedPositions,
+                checkpoint -> (bytes, index) -> {
+                    O value = deserialize(bytes);
+                    // the excerpt is read again after a restart until its last value is acknowledged
+                    long nextPosition = TailerSubscription.hasNextValue(bytes) ? index : index + 1;
+                    return new AcknowledgeableValue<>(index, value, checkpoint, nextPosition);
+                });
+    }
+
+    private <V> Flux<V> consumerFlux(String consumerName, Function<ConsumerCheckpoint, PositionListener> positions,
+            Function<ConsumerCheckpoint, ExcerptReader<V>> reader) {
+        return Flux.defer(() -> {
+            ConsumerCheckpoint checkpoint = consumers.compute(consumerName, (name, current) -> {
+                if (current != null && !current.isClosed()) {
+                    throw new IllegalStateException("consumer " + name + " is already subscribed");
                 }
-                int cycle = rollCycle.toCycle(tailer.index());
-                if (cycle != previousCycle) {
-                    if (deleteAfterRead) {
-                        deleteFile(previousCycle);
+                return new ConsumerCheckpoint(queue.file(), name);
+            });
+            return new TailerFlux<>(() -> moveAtOrAfter(queue.createTailer(), checkpoint.position()),
+                    reader.apply(checkpoint), false, runtime, rollCycle, CycleListener.NONE,
+                    () -> activeReaders.register(consumerName, positions.apply(checkpoint)));
+        });
+    }
+
+    private Flux<O> tailerFlux(String name, Supplier<ExcerptTailer> tailerSupplier, boolean onlyHistory,
+            CycleListener cycleListener) {
+        return tailerFlux(name, tailerSupplier, onlyHistory, cycleListener, this::deserializeValue);
+    }
+
+    private Flux<O> tailerFlux(String name, Supplier<ExcerptTailer> tailerSupplier, boolean onlyHistory,
+            CycleListener cycleListener, Function<BytesIn, O> reader) {
+        return new TailerFlux<>(tailerSupplier, (bytes, index) -> deserialize(bytes, reader), onlyHistory, runtime,
+                rollCycle, cycleListener, () -> activeReaders.register(name, PositionListener.NONE));
+    }
+
+    private Flux<IndexedValue<O>> indexedFlux(String name, UnaryOperator<ExcerptTailer> positioner, boolean onlyHistory) {
+        return new TailerFlux<>(() -> positioner.apply(queue.createTailer()),
+                (bytes, index) -> new IndexedValue<>(index, deserialize(bytes)), onlyHistory, runtime, rollCycle,
+                CycleListener.NONE, () -> activeReaders.register(name, PositionListener.NONE));
+    }
+
+    private O deserialize(BytesIn rawData) {
+        return deserialize(rawData, this::deserializeValue);
+    }
+
+    private O deserialize(BytesIn rawData, Function<BytesIn, O> reader) {
+        if (!metricsEnabled) {
+            return reader.apply(rawData);
+        }
+        long start = System.nanoTime();
+        O value = reader.apply(rawData);
+        metrics.onRead(System.nanoTime() - start);
+        return value;
+    }
+
+    protected abstract O deserializeValue(BytesIn rawData);
+
+    @Override
+    public Flux<O> retrieveHistory() {
+        return tailerFlux("history", this::createTailerAtStart, true, CycleListener.NONE);
+    }
+
+    @Override
+    public Flux<O> retrieveNewValues() {
+        return tailerFlux("new", () -> queue.createTailer().toEnd(), false, CycleListener.NONE);
+    }
+
+    /**
+     * Same as {@link #retrieveNewValues()}, the values are read with the given reader instead of {@link #deserializeValue(BytesIn)}.
+     */
+    protected Flux<O> retrieveNewValues(Function<BytesIn, O> reader) {
+        return tailerFlux("new", () -> queue.createTailer().toEnd(), false, CycleListener.NONE, reader);
+    }
+
+    @Override
+    public Flux<O> retrieveSharedNewValues(SlowSubscriberPolicy slowSubscriberPolicy, int bufferSize) {
+        return sharedTail.subscribe(slowSubscriberPolicy, bufferSize);
+    }
+
+    /**
+     * Reads the history with several tailers, each one reading a disjoint range of consecutive roll cycles.
+     * The ranges are balanced by number of excerpts. The tailers are served by the reader runtime of the store,
+     * they are read concurrently up to its number of reader threads.
+     * The values of a rail are in index order, but the rails are not ordered with each other.
+     * The cycles are split again on each subscription, once for all the rails.
+     *
+     * @param parallelism number of rails.
+     * @return the history of this store, split in rails.
+     */
+    public ParallelFlux<O> retrieveHistoryParallel(int parallelism) {
+        checkParallelism(parallelism);
+        return new ParallelFlux<O>() {
+            @Override
+            public int parallelism() {
+                return parallelism;
+            }
+
+            @Override
+            public void subscribe(CoreSubscriber<? super O>[] subscribers) {
+                if (validate(subscribers)) {
+                    Flux<O>[] rails = historyRails(parallelism, Mono.just(railFirstCycles(parallelism)));
+                    for (int i = 0; i < parallelism; i++) {
+                        rails[i].subscribe(subscribers[i]);
                     }
-                    previousCycle = cycle;
                 }
             }
-        } catch (Exception e) {
-            LOGGER.error("Error while tailing on queue {}", tailer.queue().file().getAbsolutePath(), e);
+        };
+    }
+
+    /**
+     * Reads the history like {@link #retrieveHistoryParallel(int)}, and merges the rails back in index order.
+     * Each rail reads ahead at most {@code prefetch} values while the previous rails are emitted.
+     *
+     * @param parallelism number of rails.
+     * @param prefetch    number of values read ahead by each rail.
+     * @return the history of this store, in index order.
+     */
+    public Flux<O> retrieveHistoryParallelOrdered(int parallelism, int prefetch) {
+        checkParallelism(parallelism);
+        return Flux.defer(() -> Flux.mergeSequential(
+                Arrays.asList(historyRails(parallelism, Mono.just(railFirstCycles(parallelism)))), parallelism, prefetch));
+    }
+
+    private static void checkParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("the parallelism must be positive, got " + parallelism);
         }
     }
 
-    protected abstract O deserializeValue(BytesIn rawData);
+    @SuppressWarnings("unchecked")
+    private Flux<O>[] historyRails(int parallelism, Mono<long[]> firstCycles) {
+        Flux<O>[] rails = new Flux[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            int rail = i;
+            rails[i] = firstCycles.flatMapMany(cycles -> historyRail(cycles, rail));
+        }
+        return rails;
+    }
 
-    private void waitMillis(long time) {
-        try {
-            MILLISECONDS.sleep(time);
-        } catch (InterruptedException e) {
-            //interrupt can happen when the flux is cancelled
-            Thread.currentThread().interrupt();
+    /**
+     * A rail reads from its first cycle until the first cycle of the next rail. The first rail reads from the start
+     * of the queue and the last one until its end, so that the rails cover the whole history even if cycles
+     * are added or deleted once the cycles have been split.
+     */
+    private Flux<O> historyRail(long[] firstCycles, int rail) {
+        if (rail >= firstCycles.length) {
+            return Flux.empty();
         }
+        UnaryOperator<ExcerptTailer> positioner = rail == 0 ? this::moveToStart :
+                tailer -> moveAtOrAfter(tailer, queue.rollCycle().toIndex((int) firstCycles[rail], 0));
+        long endCycle = rail + 1 < firstCycles.length ? firstCycles[rail + 1] : Long.MAX_VALUE;
+        return indexedFlux("history-" + rail, positioner, true)
+                .takeWhile(v -> queue.rollCycle().toCycle(v.index()) < endCycle)
+                .map(IndexedValue::value);
     }
 
-    private void deleteFile(int previousCycle) {
-        WireStore wireStore = queue.storeForCycle(previousCycle, 0, false);
-        if (wireStore != null) {
-            File file = wireStore.file();
-            if (file != null) {
-                deleteWireStore(file);
-            } else {
-                LOGGER.error("Could not find file for cycle {}", previousCycle);
+    /**
+     * Splits the cycles of the queue in at most {@code count} ranges of consecutive cycles,
+     * with about the same number of excerpts. The cycles deleted since they were listed are skipped.
+     *
+     * @return the first cycle of each range.
+     */
+    private long[] railFirstCycles(int count) {
+        List<Long> cycles = new ArrayList<>();
+        List<Long> excerpts = new ArrayList<>();
+        long total = 0;
+        for (Long cycle : cycles()) {
+            long cycleExcerpts = queue.exceptsPerCycle(cycle.intValue());
+            if (cycleExcerpts < 0) {
+                continue; // the cycle file does not exist anymore
             }
-        } else {
-            LOGGER.trace("wirestore is null for cycle {}", previousCycle);
+            cycles.add(cycle);
+            excerpts.add(cycleExcerpts);
+            total += cycleExcerpts;
+        }
+        long share = Math.max(1, (total + count - 1) / count);
+        List<Long> firstCycles = new ArrayList<>();
+        long inRange = share;
+        for (int i = 0; i < cycles.size(); i++) {
+            if (inRange >= share && firstCycles.size() < count) {
+                firstCycles.add(cycles.get(i));
+                inRange = 0;
+            }
+            inRange += excerpts.get(i);
         }
+        return firstCycles.stream().mapToLong(Long::longValue).toArray();
     }
 
-    private void deleteWireStore(File file) {
-        try {
-            boolean deleted = file.delete();
-            logDeletionResult(file, deleted);
-        } catch (Exception e) {
-            LOGGER.error("Could not delete file {}", file.getAbsolutePath(), e);
+    /**
+     * @param positioner  moves a new tailer to the first excerpt to read.
+     * @param onlyHistory if true, the flux completes once the end of the queue is reached.
+     * @return the values read from the position set by the positioner.
+     */
+    Flux<O> retrieveFromPosition(UnaryOperator<ExcerptTailer> positioner, boolean onlyHistory) {
+        return tailerFlux("position", () -> positioner.apply(queue.createTailer()), onlyHistory, CycleListener.NONE);
+    }
+
+    /**
+     * @param index index of a Chronicle Queue excerpt.
+     * @return the value stored at the given index, or an empty Mono if there is no excerpt at this index.
+     * If appends are batched, the first value of the excerpt is returned (see {@link #retrieveRange(long, long)}).
+     */
+    public Mono<IndexedValue<O>> retrieve(long index) {
+        return retrieveRange(index, index + 1).next();
+    }
+
+    /**
+     * @param fromIndex index of the first excerpt to read (inclusive).
+     *                  If there is no excerpt at this index, the range starts at the next excerpt.
+     * @param toIndex   index of the end of the range (exclusive).
+     * @return the values stored between the given indices, along with their index, and completes the stream.
+     */
+    public Flux<IndexedValue<O>> retrieveRange(long fromIndex, long toIndex) {
+        if (fromIndex >= toIndex) {
+            return Flux.empty();
         }
+        return indexedFlux("range", tailer -> moveAtOrAfter(tailer, fromIndex), true)
+                .takeWhile(v -> v.index() < toIndex);
     }
 
-    private void logDeletionResult(File file, boolean deleted) {
-        if (deleted) {
-            LOGGER.trace("file {} deleted after read", file.getAbsolutePath());
-        } else {
-            LOGGER.error("Could not delete file {}", file.getAbsolutePath());
+    /**
+     * The first value is found from the number of excerpts of the last roll cycles, the history is not scanned.
+     *
+     * @param count number of values to retrieve.
+     * @return the last values present in the store, along with their index, and completes the stream.
+     */
+    public Flux<IndexedValue<O>> retrieveLast(int count) {
+        if (count < 1) {
+            return Flux.empty();
         }
+        return indexedFlux("last", tailer -> moveBeforeEnd(tailer, count), true)
+                .takeLast(count);
     }
 
-    @Override
-    public Flux<O> retrieveHistory() {
-        return Flux.create(sink -> launchTailer(sink, ReaderType.ONLY_HISTORY, false));
+    /**
+     * Moves the tailer to the given index, or to the next excerpt if there is no excerpt at this index
+     * (e.g. index past the end of a cycle, or cycle deleted).
+     */
+    private ExcerptTailer moveAtOrAfter(ExcerptTailer tailer, long index) {
+        if (tailer.moveToIndex(index)) {
+            return tailer;
+        }
+        Long nextCycle = cycles().higher((long) queue.rollCycle().toCycle(index));
+        if (nextCycle == null || !tailer.moveToIndex(queue.rollCycle().toIndex(nextCycle.intValue(), 0))) {
+            return tailer.toEnd();
+        }
+        return tailer;
     }
 
-    @Override
-    public Flux<O> retrieveNewValues() {
-        ExcerptTailer tailer = queue.createTailer().toEnd();
-        return Flux.create(sink -> launchTailer(sink, tailer, ReaderType.ALL, false));
+    private ExcerptTailer createTailerAtStart() {
+        return moveToStart(queue.createTailer());
+    }
+
+    private ExcerptTailer moveToStart(ExcerptTailer tailer) {
+        NavigableSet<Long> cycles = cycles();
+        if (!cycles.isEmpty() && cycles.first() != queue.firstCycle()) {
+            // the first cycle known by the queue has been deleted
+            return moveAtOrAfter(tailer, queue.rollCycle().toIndex(cycles.first().intValue(), 0));
+        }
+        return tailer;
+    }
+
+    /**
+     * Moves the tailer to the given number of excerpts before the end of the queue.
+     * The index of the excerpt is computed from the number of excerpts of the last cycles.
+     */
+    private ExcerptTailer moveBeforeEnd(ExcerptTailer tailer, long excerpts) {
+        long remaining = excerpts;
+        for (Long cycle : cycles().descendingSet()) {
+            long cycleExcerpts = queue.exceptsPerCycle(cycle.intValue());
+            if (cycleExcerpts < 0) {
+                continue; // the cycle file does not exist anymore
+            }
+            if (cycleExcerpts >= remaining) {
+                return moveAtOrAfter(tailer, queue.rollCycle().toIndex(cycle.intValue(), cycleExcerpts - remaining));
+            }
+            remaining -= cycleExcerpts;
+        }
+        return moveToStart(tailer);
+    }
+
+    /**
+     * The cycles are listed from the files of the queue directory, since the first cycle known by the queue
+     * is not updated when a cycle file is deleted.
+     *
+     * @return the roll cycles of the queue, in ascending order.
+     */
+    NavigableSet<Long> cycles() {
+        File[] files = queue.file().listFiles((dir, name) -> name.endsWith(SingleChronicleQueue.SUFFIX));
+        NavigableSet<Long> cycles = new TreeSet<>();
+        if (files == null || files.length == 0) {
+            return cycles;
+        }
+        if (cycleFiles == null) {
+            cycleFiles = new RollingResourcesCache(queue.rollCycle(), queue.epoch(),
+                    name -> new File(queue.file(), name + SingleChronicleQueue.SUFFIX),
+                    file -> file.getName().substring(0, file.getName().length() - SingleChronicleQueue.SUFFIX.length()));
+        }
+        for (File file : files) {
+            try {
+                cycles.add(cycleFiles.toLong(file));
+            } catch (RuntimeException e) {
+                LOGGER.debug("File {} is not a cycle file", file.getAbsolutePath(), e);
+            }
+        }
+        return cycles;
+    }
+
+    SingleChronicleQueue queue() {
+        return queue;
+    }
+
+    /**
+     * The counters and histograms of the snapshot are filled by the {@link StoreMetrics} of the store, see
+     * {@link AbstractChronicleStoreBuilder#metrics(StoreMetrics)}. The subscribers are listed with their read position
+     * and their lag, the number of excerpts between their position and the end of the store.
+     *
+     * @return a snapshot of the statistics of this store and its active subscribers.
+     */
+    public synchronized StoreStats stats() {
+        if (endTailer == null) {
+            endTailer = queue.createTailer();
+        }
+        long endIndex = endTailer.toEnd().index();
+        StoreStatsBuilder stats = StoreStats.newBuilder().endIndex(endIndex);
+        metrics.snapshot(stats);
+        activeReaders.snapshot(stats, index -> lag(index, endIndex));
+        return stats.build();
+    }
+
+    private long lag(long index, long endIndex) {
+        if (index >= endIndex) {
+            return 0;
+        }
+        try {
+            return queue.countExcerpts(index, endIndex);
+        } catch (RuntimeException e) {
+            LOGGER.debug("Could not count the excerpts between {} and {}", index, endIndex, e);
+            return -1;
+        }
     }
 
     @Override
@@ -183,16 +667,22 @@ public abstract class AbstractChronicleStore<I, O> implements FluxStore<I, O> {
         return new ReplayFlux<>(historySource, timestampExtractor);
     }
 
-    private enum ReaderType {
-        ALL,
-        ONLY_HISTORY
-    }
-
     public abstract static class AbstractChronicleStoreBuilder<B extends AbstractChronicleStoreBuilder<B, R, T>, R extends AbstractChronicleStore, T> {
         private String path;
         private Function<T, byte[]> serializer;
         private Function<byte[], T> deserializer;
+        private ValueMarshaller<T> marshaller;
         private RollCycle rollCycle = RollCycles.DAILY;
+        private WaitStrategy waitStrategy = WaitStrategy.backoff(100, 100, Duration.ofMillis(10));
+        private int readerThreads = 1;
+        private TailerRuntime runtime;
+        private int maxBatchSize = 1;
+        private Duration maxBatchLinger = Duration.ZERO;
+        private int maxBatchBytes = Integer.MAX_VALUE;
+        private int asyncCapacity = 0;
+        private AppendOverflowPolicy overflowPolicy = AppendOverflowPolicy.BLOCK;
+        private RetentionPolicy retentionPolicy;
+        private StoreMetrics metrics = StoreMetrics.NONE;
 
         protected AbstractChronicleStoreBuilder() {
         }
@@ -227,6 +717,18 @@ public abstract class AbstractChronicleStore<I, O> implements FluxStore<I, O> {
             return getThis();
         }
 
+        /**
+         * Sets a marshaller that writes and reads the values directly in the queue memory,
+         * it replaces the {@link #serializer(Function)} and {@link #deserializer(Function)}.
+         *
+         * @param marshaller data marshaller
+         * @return this builder
+         */
+        public B marshaller(ValueMarshaller<T> marshaller) {
+            this.marshaller = marshaller;
+            return getThis();
+        }
+
         /**
          * @param rollCycle roll cycle for the files
          * @return this builder
@@ -236,6 +738,95 @@ public abstract class AbstractChronicleStore<I, O> implements FluxStore<I, O> {
             return getThis();
         }
 
+        /**
+         * @param waitStrategy strategy used by the readers when the queue is empty or when there is no demand from downstream.
+         *                     By default, the readers progressively back off from spinning to parking for at most 10 ms.
+         *                     Ignored by the readers if a {@link #tailerRuntime(TailerRuntime)} is provided.
+         *                     It is also used by the thread of the {@link #asyncAppender(int, AppendOverflowPolicy)}.
+         * @return this builder
+         */
+        public B waitStrategy(WaitStrategy waitStrategy) {
+            this.waitStrategy = waitStrategy;
+            return getThis();
+        }
+
+        /**
+         * Enables batched appends for the streams stored with {@link #store(Publisher)}: the values are grouped and
+         * written together in a single excerpt, which amortizes the excerpt header and index costs.
+         * The readers transparently unpack the batches, and the values stored before the batching was enabled remain readable.
+         * Please note that the values waiting for their batch to be written are lost if the storage is disposed.
+         *
+         * @param maxBatchSize  maximum number of values per batch.
+         * @param maxLinger     maximum time a value waits for its batch to be complete before being written.
+         * @param maxBatchBytes maximum size of an excerpt, a batch exceeding this size is split in several excerpts.
+         * @return this builder
+         */
+        public B batching(int maxBatchSize, Duration maxLinger, int maxBatchBytes) {
+            if (maxBatchSize < 1 || maxBatchBytes < 1) {
+                throw new IllegalArgumentException("the batch size must be positive");
+            }
+            this.maxBatchSize = maxBatchSize;
+            this.maxBatchLinger = maxLinger;
+            this.maxBatchBytes = maxBatchBytes;
+            return getThis();
+        }
+
+        /**
+         * Enables the asynchronous appender for the items stored with {@link #store(Object)} and {@link #storeAsync(Object)}:
+         * the producers serialize their items into a lock-free ring buffer, and a single thread writes them in the queue.
+         * This turns the store call into a constant time enqueue, without contention on the queue write lock.
+         *
+         * @param capacity       capacity of the ring buffer (rounded up to a power of 2).
+         * @param overflowPolicy behavior when the ring buffer is full.
+         * @return this builder
+         */
+        public B asyncAppender(int capacity, AppendOverflowPolicy overflowPolicy) {
+            this.asyncCapacity = capacity;
+            this.overflowPolicy = overflowPolicy;
+            return getThis();
+        }
+
+        /**
+         * @param retentionPolicy rules used to delete the oldest cycle files of the store in the background.
+         *                        By default, the files are only deleted by the readers retrieving the values with
+         *                        {@code deleteAfterRead}.
+         * @return this builder
+         */
+        public B retention(RetentionPolicy retentionPolicy) {
+            this.retentionPolicy = retentionPolicy;
+            return getThis();
+        }
+
+        /**
+         * @param metrics instrumentation of the append and read paths of the store, see {@link #stats()}.
+         *                By default, nothing is measured.
+         * @return this builder
+         */
+        public B metrics(StoreMetrics metrics) {
+            this.metrics = metrics;
+            return getThis();
+        }
+
+        /**
+         * @param readerThreads number of threads shared by all the subscriptions of the store (1 by default).
+         *                      Ignored if a {@link #tailerRuntime(TailerRuntime)} is provided.
+         * @return this builder
+         */
+        public B readerThreads(int readerThreads) {
+            this.readerThreads = readerThreads;
+            return getThis();
+        }
+
+        /**
+         * @param runtime reader runtime used to serve the subscriptions of the store, it can be shared with other stores.
+         *                The runtime is not disposed when the store is closed.
+         * @return this builder
+         */
+        public B tailerRuntime(TailerRuntime runtime) {
+            this.runtime = runtime;
+            return getThis();
+        }
+
         public abstract R build();
     }
 }
\ No newline at end of file
@@ -0,0 +1,58 @@
+package ch.streamly.chronicle.flux;
+
+import ch.streamly.domain.WrappedValue;
+
+/**
+ * A value read by a durable named consumer, whose position is only saved once the value is acknowledged.
+ * Acknowledging a value also acknowledges all the values read before it.
+ *
+ * @param <T> data type
+ * @author mgabriel.
+ */
+public final class AcknowledgeableValue<T> implements WrappedValue<T> {
+    private final long index;
+    private final T value;
+    private final ConsumerCheckpoint checkpoint;
+    private final long nextPosition;
+
+    /**
+     * @param index        index of the excerpt holding the value.
+     * @param value        value read.
+     * @param checkpoint   checkpoint of the consumer.
+     * @param nextPosition position from which the consumer resumes once the value is acknowledged.
+     */
+    AcknowledgeableValue(long index, T value, ConsumerCheckpoint checkpoint, long nextPosition) {
+        this.index = index;
+        this.value = value;
+        this.checkpoint = checkpoint;
+        this.nextPosition = nextPosition;
+    }
+
+    /**
+     * @return the index of the excerpt holding the value.
+     */
+    public long index() {
+        return index;
+    }
+
+    @Override
+    public T value() {
+        return value;
+    }
+
+    /**
+     * Saves the position of the consumer after this value. It has no effect once the subscription is terminated,
+     * the values not acknowledged before are emitted again on the next subscription.
+     */
+    public void acknowledge() {
+        checkpoint.acknowledge(nextPosition);
+    }
+
+    @Override
+    public String toString() {
+        return "AcknowledgeableValue{" +
+                "index=" + index +
+                ", value=" + value +
+                '}';
+    }
+}
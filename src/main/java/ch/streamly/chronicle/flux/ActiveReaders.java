@@ -0,0 +1,102 @@
+package ch.streamly.chronicle.flux;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongUnaryOperator;
+
+import ch.streamly.chronicle.flux.TailerSubscription.PositionListener;
+import ch.streamly.chronicle.flux.metrics.StoreStats.StoreStatsBuilder;
+import ch.streamly.chronicle.flux.metrics.SubscriberStats;
+import net.openhft.chronicle.queue.RollCycle;
+
+/**
+ * Read positions of the active subscribers of a store, used to avoid deleting a cycle file that is still read.
+ *
+ * @author mgabriel.
+ */
+final class ActiveReaders {
+    private static final long UNKNOWN = Long.MIN_VALUE;
+    private final Set<Reader> readers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Registers a new reader, its position is unknown (all the cycles are protected) until its tailer is created.
+     *
+     * @param delegate listener notified of the positions of the reader.
+     * @return the listener to give to the tailer of the reader.
+     */
+    PositionListener register(PositionListener delegate) {
+        return register("reader", delegate);
+    }
+
+    /**
+     * @param name     name of the reader in the statistics of the store.
+     * @param delegate listener notified of the positions of the reader.
+     * @return the listener to give to the tailer of the reader.
+     */
+    synchronized PositionListener register(String name, PositionListener delegate) {
+        Reader reader = new Reader(name, delegate);
+        readers.add(reader);
+        return reader;
+    }
+
+    /**
+     * @param rollCycle roll cycle of the queue.
+     * @return the first cycle that can still be read by an active reader,
+     * {@link Integer#MAX_VALUE} if there is no active reader.
+     */
+    int firstReadCycle(RollCycle rollCycle) {
+        int firstCycle = Integer.MAX_VALUE;
+        for (Reader reader : readers) {
+            long index = reader.index;
+            if (index == UNKNOWN) {
+                return Integer.MIN_VALUE;
+            }
+            firstCycle = Math.min(firstCycle, rollCycle.toCycle(index));
+        }
+        return firstCycle;
+    }
+
+    /**
+     * Adds the statistics of the readers whose position is known.
+     *
+     * @param stats snapshot being built.
+     * @param lag   computes the number of excerpts between an index and the end of the queue.
+     */
+    void snapshot(StoreStatsBuilder stats, LongUnaryOperator lag) {
+        for (Reader reader : readers) {
+            long index = reader.index;
+            if (index != UNKNOWN) {
+                stats.subscriber(new SubscriberStats(reader.name, index, lag.applyAsLong(index), reader.emitted));
+            }
+        }
+    }
+
+    private final class Reader implements PositionListener {
+        private final String name;
+        private final PositionListener delegate;
+        private volatile long index = UNKNOWN;
+        private volatile long emitted;
+
+        private Reader(String name, PositionListener delegate) {
+            this.name = name;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onPosition(long index) {
+            this.index = index;
+            delegate.onPosition(index);
+        }
+
+        @Override
+        public void onEmitted(int values) {
+            emitted += values; // single writer, the reader thread
+        }
+
+        @Override
+        public void onTerminate() {
+            readers.remove(this);
+            delegate.onTerminate();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package ch.streamly.chronicle.flux;
+
+/**
+ * Behavior of the asynchronous appender of a store when its ring buffer is full.
+ *
+ * @author mgabriel.
+ */
+public enum AppendOverflowPolicy {
+    /**
+     * The producer waits until a slot is available.
+     */
+    BLOCK,
+    /**
+     * The value is discarded. The completion signal of the value, if any, is an overflow error.
+     */
+    DROP,
+    /**
+     * An overflow exception is thrown to the producer, or signaled on the completion of the value.
+     */
+    FAIL
+}
@@ -0,0 +1,277 @@
+package ch.streamly.chronicle.flux;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.streamly.chronicle.flux.WaitStrategy.Waiter;
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.queue.ChronicleQueue;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import reactor.core.Disposable;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+/**
+ * Appender decoupling the producers from the queue write lock.
+ * The producers serialize their values into the slots of a bounded, lock-free multi-producer ring buffer,
+ * and a single writer thread drains the ring buffer into one {@link ExcerptAppender}.
+ * The slots and their bytes are reused, enqueuing a value does not allocate.
+ * <p>
+ * Once disposed, the appender rejects the new values, waits for the producers already enqueuing a value,
+ * writes all the values enqueued, and only then releases the bytes of the slots.
+ *
+ * @param <I> data type
+ * @author mgabriel.
+ */
+final class AsyncAppender<I> implements Disposable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncAppender.class);
+    private static final int INITIAL_SLOT_SIZE = 256;
+    private final ChronicleQueue queue;
+    private final BiConsumer<Bytes<?>, I> valueWriter;
+    private final AppendOverflowPolicy overflowPolicy;
+    private final Runnable onWritten;
+    private final Waiter waiter;
+    private final Slot[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicInteger producers = new AtomicInteger();
+    private final Queue<FlushRequest> flushRequests = new ConcurrentLinkedQueue<>();
+    private final Thread writerThread;
+    private volatile long head;
+    private volatile boolean running = true;
+
+    /**
+     * @param queue          queue to write to.
+     * @param valueWriter    serializes a value in the bytes of a slot.
+     * @param capacity       capacity of the ring buffer, rounded up to the next power of 2.
+     * @param overflowPolicy behavior when the ring buffer is full.
+     * @param waitStrategy   strategy used by the writer thread when the ring buffer is empty.
+     * @param onWritten      called by the writer thread after values have been written.
+     */
+    AsyncAppender(ChronicleQueue queue, BiConsumer<Bytes<?>, I> valueWriter, int capacity,
+            AppendOverflowPolicy overflowPolicy, WaitStrategy waitStrategy, Runnable onWritten) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("the capacity of the appender must be positive, got " + capacity);
+        }
+        this.queue = queue;
+        this.valueWriter = valueWriter;
+        this.overflowPolicy = overflowPolicy;
+        this.onWritten = onWritten;
+        this.waiter = waitStrategy.newWaiter();
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        size = Math.max(size, 1);
+        mask = size - 1;
+        slots = new Slot[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+            sequences.set(i, i);
+        }
+        writerThread = new Thread(this::writeLoop, "ChronicleStoreAppender_" + queue.file().getAbsolutePath());
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Enqueues a value, can be called concurrently by any number of producers.
+     *
+     * @param value      value to append.
+     * @param completion completion signaled once the value is written, can be null.
+     * @return false if the value has been dropped because the ring buffer is full.
+     */
+    boolean append(I value, MonoProcessor<Void> completion) {
+        // registered before checking the flag, so that the writer thread waits for this producer once disposed
+        producers.incrementAndGet();
+        try {
+            if (!running) {
+                throw new IllegalStateException("the appender of queue " + queue.file().getAbsolutePath() + " is closed");
+            }
+            return enqueue(value, completion);
+        } finally {
+            producers.decrementAndGet();
+        }
+    }
+
+    private boolean enqueue(I value, MonoProcessor<Void> completion) {
+        long sequence = claim();
+        if (sequence < 0) {
+            return overflow(completion);
+        }
+        Slot slot = slots[(int) sequence & mask];
+        slot.bytes.clear();
+        slot.completion = completion;
+        try {
+            valueWriter.accept(slot.bytes, value);
+            slot.failed = false;
+        } catch (RuntimeException e) {
+            slot.failed = true;
+            throw e;
+        } finally {
+            sequences.lazySet((int) sequence & mask, sequence + 1);
+            waiter.signal();
+        }
+        return true;
+    }
+
+    private long claim() {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                if (overflowPolicy != AppendOverflowPolicy.BLOCK) {
+                    return -1;
+                }
+                LockSupport.parkNanos(1_000); // wait for the writer to release a slot
+                position = tail.get();
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    private boolean overflow(MonoProcessor<Void> completion) {
+        IllegalStateException overflow = Exceptions.failWithOverflow(
+                "The appender of queue " + queue.file().getAbsolutePath() + " is full");
+        if (completion != null) {
+            completion.onError(overflow);
+        }
+        if (overflowPolicy == AppendOverflowPolicy.FAIL && completion == null) {
+            throw overflow;
+        }
+        LOGGER.debug("Value dropped, the appender of queue {} is full", queue.file().getAbsolutePath());
+        return false;
+    }
+
+    /**
+     * @return a Mono that completes once all the values enqueued before this call are written.
+     */
+    Mono<Void> flush() {
+        long target = tail.get();
+        if (head >= target) {
+            return Mono.empty();
+        }
+        MonoProcessor<Void> completion = MonoProcessor.create();
+        flushRequests.add(new FlushRequest(target, completion));
+        waiter.signal();
+        return completion;
+    }
+
+    private void writeLoop() {
+        ExcerptAppender appender = queue.acquireAppender();
+        // the producers are read after the flag and before the tail: once none is in flight, no slot can be claimed
+        while (running || producers.get() > 0 || head < tail.get()) {
+            int written = drain(appender);
+            completeFlushRequests();
+            if (written > 0) {
+                onWritten.run();
+                waiter.reset();
+            } else {
+                waiter.idle();
+            }
+        }
+        releaseSlots();
+    }
+
+    private int drain(ExcerptAppender appender) {
+        int written = 0;
+        long position = head;
+        while (sequences.get((int) position & mask) == position + 1) {
+            Slot slot = slots[(int) position & mask];
+            write(appender, slot);
+            slot.completion = null;
+            sequences.lazySet((int) position & mask, position + slots.length);
+            position++;
+            head = position;
+            written++;
+        }
+        return written;
+    }
+
+    private void write(ExcerptAppender appender, Slot slot) {
+        MonoProcessor<Void> completion = slot.completion;
+        if (slot.failed) {
+            return; // the producer could not serialize its value and received the exception
+        }
+        try {
+            appender.writeBytes(slot.bytes);
+            if (completion != null) {
+                completion.onComplete();
+            }
+        } catch (Exception e) {
+            LOGGER.error("Error while appending to queue {}", queue.file().getAbsolutePath(), e);
+            if (completion != null) {
+                completion.onError(e);
+            }
+        }
+    }
+
+    private void completeFlushRequests() {
+        FlushRequest request;
+        while ((request = flushRequests.peek()) != null && request.sequence <= head) {
+            flushRequests.poll();
+            request.completion.onComplete();
+        }
+    }
+
+    private void releaseSlots() {
+        FlushRequest request;
+        while ((request = flushRequests.poll()) != null) {
+            request.completion.onComplete();
+        }
+        for (Slot slot : slots) {
+            slot.bytes.release();
+        }
+    }
+
+    /**
+     * Stops accepting new values, the values already enqueued and the values being enqueued by concurrent producers
+     * are written before the writer thread stops and releases the slots. Returns once the writer thread has stopped.
+     */
+    @Override
+    public void dispose() {
+        running = false;
+        waiter.signal();
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return !running;
+    }
+
+    private static final class Slot {
+        private final Bytes<?> bytes = Bytes.allocateElasticDirect(INITIAL_SLOT_SIZE);
+        private MonoProcessor<Void> completion;
+        private boolean failed;
+    }
+
+    private static final class FlushRequest {
+        private final long sequence;
+        private final MonoProcessor<Void> completion;
+
+        private FlushRequest(long sequence, MonoProcessor<Void> completion) {
+            this.sequence = sequence;
+            this.completion = completion;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ch.streamly.chronicle.flux;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A waiter that spins, then yields, then parks the reader thread with an exponentially growing park duration.
+ * A parked reader is unparked by {@link #signal()}, a signal received before the reader parks makes the next park return immediately.
+ *
+ * @author mgabriel.
+ */
+class BackoffWaiter implements WaitStrategy.Waiter {
+    private static final long MIN_PARK_NANOS = 1_000;
+    private final int spins;
+    private final int yields;
+    private final long minParkNanos;
+    private final long maxParkNanos;
+    private volatile Thread reader;
+    private int idleCount;
+    private long parkNanos;
+
+    BackoffWaiter(int spins, int yields, long maxParkNanos) {
+        this(spins, yields, Math.min(MIN_PARK_NANOS, maxParkNanos), maxParkNanos);
+    }
+
+    BackoffWaiter(int spins, int yields, long minParkNanos, long maxParkNanos) {
+        this.spins = spins;
+        this.yields = yields;
+        this.minParkNanos = minParkNanos;
+        this.maxParkNanos = maxParkNanos;
+        this.parkNanos = minParkNanos;
+    }
+
+    @Override
+    public void idle() {
+        if (idleCount < spins) {
+            idleCount++;
+        } else if (idleCount < spins + yields) {
+            idleCount++;
+            Thread.yield();
+        } else {
+            park();
+        }
+    }
+
+    private void park() {
+        if (reader == null) {
+            reader = Thread.currentThread();
+        }
+        LockSupport.parkNanos(this, parkNanos);
+        parkNanos = Math.min(parkNanos << 1, maxParkNanos);
+    }
+
+    @Override
+    public void reset() {
+        idleCount = 0;
+        parkNanos = minParkNanos;
+    }
+
+    @Override
+    public void signal() {
+        Thread thread = reader;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+}
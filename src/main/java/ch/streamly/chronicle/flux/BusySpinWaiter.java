@@ -0,0 +1,24 @@
+package ch.streamly.chronicle.flux;
+
+/**
+ * A waiter that keeps spinning on the CPU.
+ *
+ * @author mgabriel.
+ */
+class BusySpinWaiter implements WaitStrategy.Waiter {
+
+    @Override
+    public void idle() {
+        //nothing to do, the reader will immediately check the queue again.
+    }
+
+    @Override
+    public void reset() {
+        //no state
+    }
+
+    @Override
+    public void signal() {
+        //the reader never sleeps
+    }
+}
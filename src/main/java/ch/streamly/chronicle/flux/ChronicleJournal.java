@@ -1,10 +1,17 @@
 package ch.streamly.chronicle.flux;
 
+import java.nio.ByteOrder;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
+import ch.streamly.chronicle.flux.metrics.LogHistogram;
 import ch.streamly.domain.Timed;
 import ch.streamly.domain.TimedValue;
+import net.openhft.chronicle.bytes.Bytes;
 import net.openhft.chronicle.bytes.BytesIn;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import reactor.core.publisher.Flux;
 
 /**
  * Implementation of a {@link FluxJournal} backed by a Chronicle Queue.
@@ -14,6 +21,25 @@ import net.openhft.chronicle.bytes.BytesIn;
  * @author mgabriel.
  */
 public class ChronicleJournal<T> extends AbstractChronicleStore<T, Timed<T>> implements FluxJournal<T> {
+    /**
+     * Header of the records: the time is written as a native long, followed by the value length and the serialized value.
+     * The size of the records written by the previous versions is always positive, a negative header is therefore used.
+     */
+    private static final int TIMED_VALUE_FORMAT = -1;
+    /**
+     * Same as {@link #TIMED_VALUE_FORMAT} but the time is written in nanoseconds since the epoch.
+     */
+    private static final int TIMED_NANOS_VALUE_FORMAT = -2;
+    private static final int LEGACY_TIME_SIZE = Long.BYTES;
+    private static final long NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+    /**
+     * Offset between {@link System#nanoTime()} and the epoch, calibrated once with the wall clock,
+     * so that the nanosecond timestamps are monotonic and comparable between the journals of a process.
+     * The offsets of two processes differ by the precision of the wall clock when they are calibrated
+     * (a few milliseconds at most), and drift apart as their wall clocks are adjusted.
+     */
+    private static final long EPOCH_NANOS_OFFSET = System.currentTimeMillis() * NANOS_PER_MILLI - System.nanoTime();
+    private final boolean nanoTimestamps;
 
     /**
      * @param path         path were the Chronicle Queue will store the files.
@@ -23,7 +49,7 @@ public class ChronicleJournal<T> extends AbstractChronicleStore<T, Timed<T>> imp
      */
     public ChronicleJournal(String path, Function<T, byte[]> serializer,
             Function<byte[], T> deserializer) {
-        super(ChronicleJournal.<T>newBuilder()
+        this(ChronicleJournal.<T>newBuilder()
                 .path(path)
                 .serializer(serializer)
                 .deserializer(deserializer));
@@ -37,57 +63,152 @@ public class ChronicleJournal<T> extends AbstractChronicleStore<T, Timed<T>> imp
         return new ChronicleJournalBuilder<>();
     }
 
-    private ChronicleJournal(ChronicleJournalBuilder<T> builder) {
+    //package private for testing
+    ChronicleJournal(ChronicleJournalBuilder<T> builder) {
         super(builder);
+        nanoTimestamps = builder.nanoTimestamps;
     }
 
     @Override
-    protected byte[] serializeValue(T v) {
-        byte[] val = super.serializeValue(v);
-        byte[] time = toByteArray(getCurrentTime());
-        byte[] result = new byte[val.length + time.length];
-        System.arraycopy(time, 0, result, 0, time.length);
-        System.arraycopy(val, 0, result, time.length, val.length);
-        return result;
+    protected void writeValue(Bytes<?> bytes, T v) {
+        if (nanoTimestamps) {
+            bytes.writeInt(TIMED_NANOS_VALUE_FORMAT);
+            bytes.writeLong(getCurrentTimeNanos());
+        } else {
+            bytes.writeInt(TIMED_VALUE_FORMAT);
+            bytes.writeLong(getCurrentTime());
+        }
+        super.writeValue(bytes, v);
     }
 
     @Override
     protected Timed<T> deserializeValue(BytesIn rawData) {
-        int size = rawData.readInt();
-        byte[] bytes = new byte[size];
-        rawData.read(bytes);
-        byte[] time = new byte[8];
-        byte[] val = new byte[bytes.length - 8];
-        System.arraycopy(bytes, 0, time, 0, time.length);
-        System.arraycopy(bytes, 8, val, 0, val.length);
-        T value = deserializer.apply(val);
-        long receptionTime = fromByteArray(time);
-        return new TimedValue<>(receptionTime, value);
-
-    }
-
-    private static long fromByteArray(byte[] bytes) {
-        return (bytes[0] & 0xFFL) << 56
-                | (bytes[1] & 0xFFL) << 48
-                | (bytes[2] & 0xFFL) << 40
-                | (bytes[3] & 0xFFL) << 32
-                | (bytes[4] & 0xFFL) << 24
-                | (bytes[5] & 0xFFL) << 16
-                | (bytes[6] & 0xFFL) << 8
-                | (bytes[7] & 0xFFL);
-    }
-
-    private static byte[] toByteArray(long value) {
-        return new byte[] {
-                (byte) (value >> 56),
-                (byte) (value >> 48),
-                (byte) (value >> 40),
-                (byte) (value >> 32),
-                (byte) (value >> 24),
-                (byte) (value >> 16),
-                (byte) (value >> 8),
-                (byte) value
-        };
+        int header = rawData.readInt();
+        if (header == TIMED_VALUE_FORMAT) {
+            long receptionTime = rawData.readLong();
+            return new TimedValue<>(receptionTime, readValue(rawData));
+        } else if (header == TIMED_NANOS_VALUE_FORMAT) {
+            long receptionTime = rawData.readLong() / NANOS_PER_MILLI;
+            return new TimedValue<>(receptionTime, readValue(rawData));
+        } else if (header >= LEGACY_TIME_SIZE) {
+            return readLegacyValue(rawData, header);
+        }
+        throw new IllegalStateException("Unknown journal record header " + header);
+    }
+
+    /**
+     * Reads a value and keeps the time it was written, in nanoseconds.
+     * The values written without {@link ChronicleJournalBuilder#nanoTimestamps()} only have a millisecond precision.
+     */
+    private Timed<T> readWriteTime(BytesIn rawData, LatencyRecorder recorder) {
+        int header = rawData.readInt();
+        long writeTimeNanos;
+        T value;
+        if (header == TIMED_NANOS_VALUE_FORMAT) {
+            writeTimeNanos = rawData.readLong();
+            value = readValue(rawData);
+        } else if (header == TIMED_VALUE_FORMAT) {
+            writeTimeNanos = rawData.readLong() * NANOS_PER_MILLI;
+            value = readValue(rawData);
+        } else if (header >= LEGACY_TIME_SIZE) {
+            writeTimeNanos = readLegacyTime(rawData) * NANOS_PER_MILLI;
+            value = readValue(rawData, header - LEGACY_TIME_SIZE);
+        } else {
+            throw new IllegalStateException("Unknown journal record header " + header);
+        }
+        recorder.onRead(writeTimeNanos);
+        return new TimedValue<>(writeTimeNanos / NANOS_PER_MILLI, value);
+    }
+
+    /**
+     * Reads a value written by the previous versions of the journal:
+     * the record size, followed by the time as 8 big endian bytes and the serialized value.
+     */
+    private Timed<T> readLegacyValue(BytesIn rawData, int size) {
+        long receptionTime = readLegacyTime(rawData);
+        return new TimedValue<>(receptionTime, readValue(rawData, size - LEGACY_TIME_SIZE));
+    }
+
+    private static long readLegacyTime(BytesIn rawData) {
+        long time = rawData.readLong();
+        return ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ? Long.reverseBytes(time) : time;
+    }
+
+    private static long readTime(BytesIn rawData) {
+        int header = rawData.readInt();
+        if (header == TIMED_NANOS_VALUE_FORMAT) {
+            return rawData.readLong() / NANOS_PER_MILLI;
+        }
+        return header == TIMED_VALUE_FORMAT ? rawData.readLong() : readLegacyTime(rawData);
+    }
+
+    /**
+     * Same as {@link #retrieveNewValues()}, the latency between the time a value was written in the journal
+     * and the time it is emitted to the subscriber is recorded in the histogram.
+     * The histogram can be shared by several subscriptions; nothing is allocated to measure the latency.
+     * Write the values with {@link ChronicleJournalBuilder#nanoTimestamps()} to measure sub-millisecond latencies.
+     * <p>
+     * The nanosecond timestamps are exact when the values are written and read by the same process. Between two
+     * processes, the latency has the error of the calibration of their clocks (a few milliseconds at most), and can
+     * therefore be negative (see {@link LogHistogram#negativeCount()}).
+     *
+     * @param latencyNanos histogram recording the latencies in nanoseconds.
+     * @return a stream of the new values stored in this journal.
+     */
+    public Flux<Timed<T>> retrieveNewValues(LogHistogram latencyNanos) {
+        return Flux.defer(() -> {
+            LatencyRecorder recorder = new LatencyRecorder(latencyNanos);
+            return retrieveNewValues(rawData -> readWriteTime(rawData, recorder)).doOnNext(recorder::onEmitted);
+        });
+    }
+
+    /**
+     * Same as {@link #retrieveAll(String)}, the latency between the time a value was written in the journal
+     * and the time it is emitted to the durable consumer is recorded in the histogram.
+     * The latency of the values read after a restart includes the time the consumer was stopped.
+     * See {@link #retrieveNewValues(LogHistogram)} for the precision of the latency.
+     *
+     * @param consumerName name of the consumer (letters, digits, '_', '.' and '-').
+     * @param latencyNanos histogram recording the latencies in nanoseconds.
+     * @return the values not yet read by the consumer, and the new values being stored in this journal.
+     */
+    public Flux<Timed<T>> retrieveAll(String consumerName, LogHistogram latencyNanos) {
+        return Flux.defer(() -> {
+            LatencyRecorder recorder = new LatencyRecorder(latencyNanos);
+            return retrieveAll(consumerName, rawData -> readWriteTime(rawData, recorder)).doOnNext(recorder::onEmitted);
+        });
+    }
+
+    /**
+     * The first value is found with a binary search on the journal time, without reading the values before it.
+     */
+    @Override
+    public Flux<Timed<T>> retrieveFrom(Instant from) {
+        long start = from.toEpochMilli();
+        return retrieveFromPosition(tailer -> seek(tailer, start), false)
+                .skipWhile(v -> v.time() < start);
+    }
+
+    /**
+     * The first value is found with a binary search on the journal time, without reading the values before it.
+     */
+    @Override
+    public Flux<Timed<T>> retrieveBetween(Instant from, Instant to) {
+        long start = from.toEpochMilli();
+        long end = to.toEpochMilli();
+        return retrieveFromPosition(tailer -> seek(tailer, start), true)
+                .skipWhile(v -> v.time() < start)
+                .takeWhile(v -> v.time() <= end);
+    }
+
+    private ExcerptTailer seek(ExcerptTailer tailer, long time) {
+        TimeIndexSearch search = new TimeIndexSearch(queue(), cycles(), tailer, ChronicleJournal::readTime);
+        long index = search.startIndex(time);
+        if (index == TimeIndexSearch.NOT_FOUND) {
+            return tailer.toEnd();
+        }
+        tailer.moveToIndex(index);
+        return tailer;
     }
 
     //package private for testing
@@ -95,12 +216,67 @@ public class ChronicleJournal<T> extends AbstractChronicleStore<T, Timed<T>> imp
         return System.currentTimeMillis();
     }
 
+    //package private for testing
+    long getCurrentTimeNanos() {
+        return EPOCH_NANOS_OFFSET + System.nanoTime();
+    }
+
+    /**
+     * Write times of the values read by a subscription and not emitted yet, in reading order: the values of a batched
+     * excerpt are all read at once, but emitted as they are requested. The values are read and emitted by the thread
+     * of the tailer, and the latency is recorded right before a value is emitted to the subscriber.
+     */
+    private final class LatencyRecorder {
+        private final LogHistogram latencyNanos;
+        private long[] writeTimes = new long[16];
+        private int head;
+        private int size;
+
+        private LatencyRecorder(LogHistogram latencyNanos) {
+            this.latencyNanos = latencyNanos;
+        }
+
+        private void onRead(long writeTimeNanos) {
+            if (size == writeTimes.length) {
+                long[] grown = new long[size * 2];
+                for (int i = 0; i < size; i++) {
+                    grown[i] = writeTimes[(head + i) & (size - 1)];
+                }
+                writeTimes = grown;
+                head = 0;
+            }
+            writeTimes[(head + size) & (writeTimes.length - 1)] = writeTimeNanos;
+            size++;
+        }
+
+        private void onEmitted(Timed<T> value) {
+            long writeTimeNanos = writeTimes[head];
+            head = (head + 1) & (writeTimes.length - 1);
+            size--;
+            latencyNanos.record(getCurrentTimeNanos() - writeTimeNanos);
+        }
+    }
+
     public static final class ChronicleJournalBuilder<T>
             extends AbstractChronicleStoreBuilder<ChronicleJournalBuilder<T>, ChronicleJournal<T>, T> {
+        private boolean nanoTimestamps;
+
         private ChronicleJournalBuilder() {
             super();
         }
 
+        /**
+         * The values are timed in nanoseconds instead of milliseconds, which is needed to measure the latency
+         * of the subscribers below the millisecond. The journals written with this option can not be read
+         * by the previous versions.
+         *
+         * @return this builder
+         */
+        public ChronicleJournalBuilder<T> nanoTimestamps() {
+            this.nanoTimestamps = true;
+            return this;
+        }
+
         @Override
         protected ChronicleJournalBuilder<T> getThis() {
             return this;
@@ -41,10 +41,7 @@ public class ChronicleStore<T> extends AbstractChronicleStore<T, T> {
 
     @Override
     protected T deserializeValue(BytesIn rawData) {
-        int size = rawData.readInt();
-        byte[] bytes = new byte[size];
-        rawData.read(bytes);
-        return deserializer.apply(bytes);
+        return readValue(rawData);
     }
 
     public static final class ChronicleStoreBuilder<T>
@@ -0,0 +1,180 @@
+package ch.streamly.chronicle.flux;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.streamly.chronicle.flux.TailerSubscription.PositionListener;
+
+/**
+ * Read position of a named consumer, persisted in a small memory-mapped file.
+ * <p>
+ * The position is the index of the next excerpt to read. It is written in the mapped memory once per pass
+ * of the tailer (it survives a crash of the process), and the file is forced to the disk periodically
+ * (to survive a crash of the host). The file is locked, a consumer can only be subscribed once at a time.
+ * <p>
+ * The position is either the read position of the tailer ({@link #onPosition(long)}), or the position acknowledged
+ * by the consumer ({@link #acknowledge(long)}). It is not written anymore once the checkpoint is closed.
+ *
+ * @author mgabriel.
+ */
+final class ConsumerCheckpoint implements PositionListener, AutoCloseable {
+    static final String CONSUMERS_DIRECTORY = "consumers";
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConsumerCheckpoint.class);
+    private static final long FORCE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final String SUFFIX = ".checkpoint";
+    private final File file;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final MappedByteBuffer buffer;
+    private long position;
+    private long lastForce = System.nanoTime();
+    private boolean dirty;
+    private volatile boolean closed;
+
+    /**
+     * @param queueDirectory directory of the queue.
+     * @param consumerName   name of the consumer.
+     */
+    ConsumerCheckpoint(File queueDirectory, String consumerName) {
+        if (consumerName.isEmpty() || !consumerName.matches("[\\w.-]+")) {
+            throw new IllegalArgumentException("invalid consumer name '" + consumerName
+                    + "', only letters, digits, '_', '.' and '-' are allowed");
+        }
+        File directory = new File(queueDirectory, CONSUMERS_DIRECTORY);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalStateException("Could not create the consumers directory " + directory.getAbsolutePath());
+        }
+        file = new File(directory, consumerName + SUFFIX);
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            lock = channel.tryLock();
+            if (lock == null) {
+                channel.close();
+                throw new IllegalStateException("consumer " + consumerName + " is already subscribed");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the checkpoint file " + file.getAbsolutePath(), e);
+        }
+        position = buffer.getLong(0);
+    }
+
+    /**
+     * @param queueDirectory directory of the queue.
+     * @return the positions of all the named consumers of the queue, subscribed or not.
+     */
+    static long[] positions(File queueDirectory) {
+        File[] files = new File(queueDirectory, CONSUMERS_DIRECTORY).listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            return new long[0];
+        }
+        long[] positions = new long[files.length];
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        for (int i = 0; i < files.length; i++) {
+            buffer.clear();
+            try (FileChannel channel = FileChannel.open(files[i].toPath(), StandardOpenOption.READ)) {
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // read the whole position
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read the checkpoint file " + files[i].getAbsolutePath(), e);
+            }
+            positions[i] = buffer.hasRemaining() ? 0 : buffer.getLong(0);
+        }
+        return positions;
+    }
+
+    /**
+     * @return the index of the next excerpt to read, 0 if the consumer never read from the queue.
+     */
+    long position() {
+        return position;
+    }
+
+    @Override
+    public void onPosition(long index) {
+        save(index);
+    }
+
+    /**
+     * @param index index of the next excerpt to read, it is ignored if it is before the saved position.
+     */
+    synchronized void acknowledge(long index) {
+        if (index > position) {
+            save(index);
+        }
+    }
+
+    /**
+     * @return a listener closing this checkpoint when the tailer stops, without saving the read positions.
+     */
+    PositionListener acknowledgedPositions() {
+        return new PositionListener() {
+            @Override
+            public void onPosition(long index) {
+                // the position is saved when the values are acknowledged
+            }
+
+            @Override
+            public void onTerminate() {
+                close();
+            }
+        };
+    }
+
+    private synchronized void save(long index) {
+        if (closed || index == position) {
+            return;
+        }
+        position = index;
+        buffer.putLong(0, index);
+        dirty = true;
+        long now = System.nanoTime();
+        if (now - lastForce >= FORCE_INTERVAL_NANOS) {
+            force();
+            lastForce = now;
+        }
+    }
+
+    private void force() {
+        if (dirty) {
+            buffer.force();
+            dirty = false;
+        }
+    }
+
+    @Override
+    public void onTerminate() {
+        close();
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            buffer.force();
+            lock.release();
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.error("Could not close the checkpoint file {}", file.getAbsolutePath(), e);
+        }
+    }
+}
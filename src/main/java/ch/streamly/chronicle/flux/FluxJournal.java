@@ -1,7 +1,12 @@
 package ch.streamly.chronicle.flux;
 
+import java.time.Instant;
+import java.util.Arrays;
+
 import ch.streamly.chronicle.flux.replay.ReplayFlux;
 import ch.streamly.domain.Timed;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
 
 /**
  * @author mgabriel.
@@ -10,8 +15,80 @@ public interface FluxJournal<T> extends FluxStore<T, Timed<T>> {
 
     /**
      * @return a Flux that can be used to replay the history with multiple strategies. The history timestamps are the ones assigned by the journal.
+     * A replay with a {@link ch.streamly.chronicle.flux.replay.ReplayController} seeks with the time index of the journal.
      */
     default ReplayFlux<Timed<T>> replayHistory() {
-        return replayHistory(Timed::time);
+        return replayHistory(Timed::time)
+                .withSeekSource(time -> retrieveBetween(Instant.ofEpochMilli(time), Instant.ofEpochMilli(Long.MAX_VALUE)));
+    }
+
+    /**
+     * @param from start of the time range (inclusive).
+     * @param to   end of the time range (inclusive).
+     * @return a Flux that can be used to replay the history of the given time range with multiple strategies.
+     * The history timestamps are the ones assigned by the journal. A replay with a
+     * {@link ch.streamly.chronicle.flux.replay.ReplayController} seeks within the time range with the time index of the journal.
+     */
+    default ReplayFlux<Timed<T>> replayHistory(Instant from, Instant to) {
+        return new ReplayFlux<>(Flux.defer(() -> retrieveBetween(from, to)), Timed::time)
+                .withSeekSource(time -> retrieveBetween(Instant.ofEpochMilli(Math.max(time, from.toEpochMilli())), to));
+    }
+
+    /**
+     * @param journals journals to replay together.
+     * @param <T>      data type
+     * @return a Flux that can be used to replay the history of all the journals, merged in the order of the journal
+     * timestamps. Each journal is read ahead by a bounded number of values.
+     */
+    @SafeVarargs
+    @SuppressWarnings("unchecked")
+    static <T> ReplayFlux<Timed<T>> replayMergedHistory(FluxJournal<T>... journals) {
+        return ReplayFlux.merge(Timed::time, Arrays.stream(journals)
+                .map(journal -> Flux.defer(journal::retrieveHistory))
+                .toArray(Publisher[]::new));
+    }
+
+    /**
+     * @param from     start of the time range (inclusive).
+     * @param to       end of the time range (inclusive).
+     * @param journals journals to replay together.
+     * @param <T>      data type
+     * @return a Flux that can be used to replay the history of all the journals within the given time range,
+     * merged in the order of the journal timestamps.
+     */
+    @SafeVarargs
+    @SuppressWarnings("unchecked")
+    static <T> ReplayFlux<Timed<T>> replayMergedHistory(Instant from, Instant to, FluxJournal<T>... journals) {
+        return ReplayFlux.merge(Timed::time, Arrays.stream(journals)
+                .map(journal -> Flux.defer(() -> journal.retrieveBetween(from, to)))
+                .toArray(Publisher[]::new));
+    }
+
+    /**
+     * The default implementation reads the values before the start time and skips them.
+     *
+     * @param from start time (inclusive).
+     * @return the values timed at or after the given time, followed by the new values being stored in this journal.
+     */
+    default Flux<Timed<T>> retrieveFrom(Instant from) {
+        long start = from.toEpochMilli();
+        return retrieveAll().skipWhile(v -> v.time() < start);
+    }
+
+    /**
+     * The default implementation reads the values before the start time and skips them.
+     *
+     * @param from start of the time range (inclusive).
+     * @param to   end of the time range (inclusive).
+     * @return the values of the history timed within the given range, the stream completes at the end of the range
+     * or at the end of the history. A range ending in the future completes at the current end of the journal,
+     * the values stored afterwards are not emitted (use {@link #retrieveFrom(Instant)} to follow the new values).
+     */
+    default Flux<Timed<T>> retrieveBetween(Instant from, Instant to) {
+        long start = from.toEpochMilli();
+        long end = to.toEpochMilli();
+        return retrieveHistory()
+                .skipWhile(v -> v.time() < start)
+                .takeWhile(v -> v.time() <= end);
     }
 }
@@ -6,6 +6,7 @@ import ch.streamly.chronicle.flux.replay.ReplayFlux;
 import org.reactivestreams.Publisher;
 import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
+import reactor.util.concurrent.Queues;
 
 /**
  * Reactive store used to store and replay a Flux.
@@ -40,6 +41,7 @@ public interface FluxStore<I, O> {
 
     /**
      * @param deleteAfterRead if true, the file storing the data on disk will be deleted once it has been read.
+     *                        The file is deleted in the background, once no other subscriber of the store reads it.
      * @return all values present in the store and new values being stored in this FluxStore.
      */
     Flux<O> retrieveAll(boolean deleteAfterRead);
@@ -54,6 +56,37 @@ public interface FluxStore<I, O> {
      */
     Flux<O> retrieveNewValues();
 
+    /**
+     * @return the stream of new values being stored in this FluxStore, read by a reader shared with the other
+     * subscribers of the shared new values. A subscriber that does not keep up is detached from the shared reader
+     * once {@link Queues#SMALL_BUFFER_SIZE} values are buffered for it, and reads with its own reader from then on.
+     */
+    default Flux<O> retrieveSharedNewValues() {
+        return retrieveSharedNewValues(SlowSubscriberPolicy.DETACH, Queues.SMALL_BUFFER_SIZE);
+    }
+
+    /**
+     * All the subscribers of the shared new values are served by a single reader, each value is read and deserialized
+     * once whatever the number of subscribers. The reader does not wait for slow subscribers.
+     * <p>
+     * The default implementation reads the new values with a reader per subscriber, and applies the policy
+     * to the values not yet requested by the subscriber.
+     *
+     * @param slowSubscriberPolicy behavior when the subscriber does not keep up with the new values.
+     * @param bufferSize           maximum number of values buffered for the subscriber.
+     * @return the stream of new values being stored in this FluxStore (history is ignored).
+     */
+    default Flux<O> retrieveSharedNewValues(SlowSubscriberPolicy slowSubscriberPolicy, int bufferSize) {
+        switch (slowSubscriberPolicy) {
+            case BUFFER:
+                return retrieveNewValues().onBackpressureBuffer(bufferSize);
+            case CONFLATE:
+                return retrieveNewValues().onBackpressureLatest();
+            default:
+                return retrieveNewValues(); // a reader per subscriber never loses values
+        }
+    }
+
     /**
      * @param timestampExtractor a function to extract the epoch time from the values.
      * @return a Flux that can be used to replay the history with multiple strategies.
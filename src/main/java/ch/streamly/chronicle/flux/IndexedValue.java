@@ -0,0 +1,61 @@
+package ch.streamly.chronicle.flux;
+
+import java.util.Objects;
+
+import ch.streamly.domain.WrappedValue;
+
+/**
+ * A value read from a store, along with the index of the Chronicle Queue excerpt holding it.
+ * The index can be used to read the value again, or to resume reading from this position.
+ * <p>
+ * When appends are batched, all the values of a batch share the index of their excerpt.
+ *
+ * @param <T> data type
+ * @author mgabriel.
+ */
+public final class IndexedValue<T> implements WrappedValue<T> {
+    private final long index;
+    private final T value;
+
+    public IndexedValue(long index, T value) {
+        this.index = index;
+        this.value = value;
+    }
+
+    /**
+     * @return the index of the excerpt holding the value.
+     */
+    public long index() {
+        return index;
+    }
+
+    @Override
+    public T value() {
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        IndexedValue<?> that = (IndexedValue<?>) o;
+        return index == that.index && Objects.equals(value, that.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(index, value);
+    }
+
+    @Override
+    public String toString() {
+        return "IndexedValue{" +
+                "index=" + index +
+                ", value=" + value +
+                '}';
+    }
+}
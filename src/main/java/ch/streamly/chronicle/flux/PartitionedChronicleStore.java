@@ -0,0 +1,296 @@
+package ch.streamly.chronicle.flux;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.streamly.chronicle.flux.ChronicleStore.ChronicleStoreBuilder;
+import ch.streamly.chronicle.flux.replay.ReplayFlux;
+import org.reactivestreams.Publisher;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.ParallelFlux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Implementation of a {@link FluxStore} striping its values across several Chronicle Queues (partitions),
+ * according to a partition key. Each partition has its own appender, so that writers storing values of different
+ * partitions do not contend on the same queue lock, and the partitions can be read in parallel.
+ * <p>
+ * The values of a partition are read in the order they were stored. The merged views of the history are ordered
+ * by the given order ({@link PartitionedChronicleStoreBuilder#orderBy(Function)}); without order, no order is
+ * guaranteed between the values of different partitions.
+ * The merged views of the new values emit the values of all the partitions as soon as they are read.
+ * <p>
+ * The indices of the values are relative to their partition, {@link #partition(int)} gives access to the store
+ * of a partition. The same index therefore designates a value in each partition.
+ *
+ * @param <T> data type
+ * @author mgabriel.
+ */
+public final class PartitionedChronicleStore<T> implements FluxStore<T, T> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PartitionedChronicleStore.class);
+    private final List<ChronicleStore<T>> partitions;
+    private final Function<T, ?> partitionKey;
+    private final Function<T, Long> order;
+    private final TailerRuntime runtime;
+    private final Scheduler writers;
+
+    private PartitionedChronicleStore(PartitionedChronicleStoreBuilder<T> builder) {
+        if (builder.partitionStore == null) {
+            throw new IllegalArgumentException("the builder of the partition stores is required");
+        }
+        if (builder.partitionKey == null) {
+            throw new IllegalArgumentException("the partition key is required");
+        }
+        partitionKey = builder.partitionKey;
+        order = builder.order;
+        runtime = TailerRuntime.newRuntime(builder.readerThreads, builder.waitStrategy);
+        writers = Schedulers.newParallel("PartitionedChronicleStoreWriter", builder.partitions, true);
+        List<ChronicleStore<T>> stores = new ArrayList<>();
+        for (int i = 0; i < builder.partitions; i++) {
+            stores.add(builder.partitionStore
+                    .path(builder.path + File.separator + "partition-" + i)
+                    .tailerRuntime(runtime)
+                    .build());
+        }
+        partitions = Collections.unmodifiableList(stores);
+    }
+
+    /**
+     * @param <BT> data type.
+     * @return a PartitionedChronicleStore builder.
+     */
+    public static <BT> PartitionedChronicleStoreBuilder<BT> newBuilder() {
+        return new PartitionedChronicleStoreBuilder<>();
+    }
+
+    /**
+     * @return the number of partitions.
+     */
+    public int partitionCount() {
+        return partitions.size();
+    }
+
+    /**
+     * @param partition index of the partition.
+     * @return the store of the partition.
+     */
+    public ChronicleStore<T> partition(int partition) {
+        return partitions.get(partition);
+    }
+
+    private int partitionOf(T value) {
+        Object key = partitionKey.apply(value);
+        if (key == null) {
+            throw new IllegalArgumentException("no partition key for value " + value);
+        }
+        return Math.floorMod(key.hashCode(), partitions.size());
+    }
+
+    /**
+     * The values are dispatched to the appenders of their partition, each partition is written by its own thread.
+     * The storage stops at the first value without partition key.
+     */
+    @Override
+    public Disposable store(Publisher<T> toStore) {
+        Disposable.Composite storage = Disposables.composite();
+        storage.add(Flux.from(toStore)
+                .groupBy(this::partitionOf)
+                .subscribe(group -> storage.add(partitions.get(group.key()).store(group.publishOn(writers))),
+                        err -> LOGGER.error("Error received", err)));
+        return storage;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the partition key of the item is null.
+     */
+    @Override
+    public void store(T item) {
+        partitions.get(partitionOf(item)).store(item);
+    }
+
+    @Override
+    public Flux<T> retrieveAll(boolean deleteAfterRead) {
+        return Flux.merge(each(store -> store.retrieveAll(deleteAfterRead)));
+    }
+
+    /**
+     * @return the history of all the partitions, merged by the order of the store if any.
+     * Without order, the values of the different partitions are emitted as soon as they are read.
+     */
+    @Override
+    public Flux<T> retrieveHistory() {
+        if (order != null) {
+            return Flux.mergeOrdered(Comparator.comparing(order), each(ChronicleStore::retrieveHistory));
+        }
+        return Flux.merge(each(ChronicleStore::retrieveHistory));
+    }
+
+    @Override
+    public Flux<T> retrieveNewValues() {
+        return Flux.merge(each(ChronicleStore::retrieveNewValues));
+    }
+
+    @Override
+    public Flux<T> retrieveSharedNewValues(SlowSubscriberPolicy slowSubscriberPolicy, int bufferSize) {
+        return Flux.merge(each(store -> store.retrieveSharedNewValues(slowSubscriberPolicy, bufferSize)));
+    }
+
+    /**
+     * @return the history of each partition on its own rail, and completes the rails.
+     */
+    public ParallelFlux<T> retrieveHistoryByPartition() {
+        return ParallelFlux.from(each(ChronicleStore::retrieveHistory));
+    }
+
+    /**
+     * @return all the values of each partition on its own rail, and the new values being stored in the partition.
+     */
+    public ParallelFlux<T> retrieveAllByPartition() {
+        return ParallelFlux.from(each(ChronicleStore::retrieveAll));
+    }
+
+    /**
+     * @return the values of each partition stored between the given indices (relative to each partition),
+     * merged by the order of the store if any. Without order, the values of the different partitions are emitted
+     * as soon as they are read.
+     */
+    public Flux<IndexedValue<T>> retrieveRange(long fromIndex, long toIndex) {
+        if (order != null) {
+            return Flux.mergeOrdered(Comparator.comparing(v -> order.apply(v.value())),
+                    each(store -> store.retrieveRange(fromIndex, toIndex)));
+        }
+        return Flux.merge(each(store -> store.retrieveRange(fromIndex, toIndex)));
+    }
+
+    /**
+     * @return the last values of all the partitions, in the order of the store.
+     * Without order, there are no global last values: the last values of each partition are emitted,
+     * one partition after the other.
+     */
+    public Flux<IndexedValue<T>> retrieveLast(int count) {
+        if (order != null) {
+            return Flux.mergeOrdered(Comparator.comparing(v -> order.apply(v.value())),
+                    each(store -> store.retrieveLast(count)))
+                    .takeLast(count);
+        }
+        return Flux.concat(each(store -> store.retrieveLast(count)));
+    }
+
+    @Override
+    public ReplayFlux<T> replayHistory(Function<T, Long> timestampExtractor) {
+        Flux<T> historySource = Flux.defer(() ->
+                Flux.mergeOrdered(Comparator.comparing(timestampExtractor), each(ChronicleStore::retrieveHistory)));
+        return new ReplayFlux<>(historySource, timestampExtractor);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <V> Publisher<V>[] each(Function<ChronicleStore<T>, Publisher<V>> retriever) {
+        Publisher<V>[] publishers = new Publisher[partitions.size()];
+        for (int i = 0; i < publishers.length; i++) {
+            publishers[i] = retriever.apply(partitions.get(i));
+        }
+        return publishers;
+    }
+
+    void close() {
+        writers.dispose();
+        partitions.forEach(ChronicleStore::close);
+        runtime.dispose();
+    }
+
+    public static final class PartitionedChronicleStoreBuilder<T> {
+        private String path;
+        private int partitions = Runtime.getRuntime().availableProcessors();
+        private Function<T, ?> partitionKey;
+        private ChronicleStoreBuilder<T> partitionStore;
+        private Function<T, Long> order;
+        private WaitStrategy waitStrategy = WaitStrategy.backoff(100, 100, Duration.ofMillis(10));
+        private int readerThreads = 1;
+
+        private PartitionedChronicleStoreBuilder() {
+        }
+
+        /**
+         * @param path path were the partitions will store their files, each partition has its own sub-directory.
+         *             This path should not be a network file system (see <a href="https://github.com/OpenHFT/Chronicle-Queue">the Chronicle queue documentation for more detail</a>
+         * @return this builder
+         */
+        public PartitionedChronicleStoreBuilder<T> path(String path) {
+            this.path = path;
+            return this;
+        }
+
+        /**
+         * @param partitions   number of partitions (number of available processors by default).
+         *                     It must not be changed once values are stored.
+         * @param partitionKey extracts the key of a value, the values with the same key are stored in the same partition.
+         *                     The key of a value must not be null.
+         * @return this builder
+         */
+        public PartitionedChronicleStoreBuilder<T> partitions(int partitions, Function<T, ?> partitionKey) {
+            if (partitions < 1) {
+                throw new IllegalArgumentException("at least one partition is required, got " + partitions);
+            }
+            if (partitionKey == null) {
+                throw new IllegalArgumentException("the partition key is required");
+            }
+            this.partitions = partitions;
+            this.partitionKey = partitionKey;
+            return this;
+        }
+
+        /**
+         * @param partitionStore builder of the partition stores, defines their serialization and options.
+         *                       The path and the tailer runtime are set by this store.
+         * @return this builder
+         */
+        public PartitionedChronicleStoreBuilder<T> partitionStore(ChronicleStoreBuilder<T> partitionStore) {
+            this.partitionStore = partitionStore;
+            return this;
+        }
+
+        /**
+         * @param order order of the values in the merged history (e.g. a timestamp).
+         *              By default, no order is guaranteed between the values of different partitions.
+         * @return this builder
+         */
+        public PartitionedChronicleStoreBuilder<T> orderBy(Function<T, Long> order) {
+            this.order = order;
+            return this;
+        }
+
+        /**
+         * @param readerThreads number of threads shared by the subscriptions of all the partitions (1 by default).
+         * @return this builder
+         */
+        public PartitionedChronicleStoreBuilder<T> readerThreads(int readerThreads) {
+            this.readerThreads = readerThreads;
+            return this;
+        }
+
+        /**
+         * @param waitStrategy strategy used by the readers when the partitions are empty or when there is no demand
+         *                     from downstream.
+         * @return this builder
+         */
+        public PartitionedChronicleStoreBuilder<T> waitStrategy(WaitStrategy waitStrategy) {
+            this.waitStrategy = waitStrategy;
+            return this;
+        }
+
+        public PartitionedChronicleStore<T> build() {
+            return new PartitionedChronicleStore<>(this);
+        }
+    }
+}
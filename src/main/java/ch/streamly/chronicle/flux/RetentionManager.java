@@ -0,0 +1,268 @@
+package ch.streamly.chronicle.flux;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.streamly.chronicle.flux.metrics.StoreMetrics;
+import net.openhft.chronicle.queue.RollCycle;
+import net.openhft.chronicle.queue.impl.WireStore;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueue;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Deletes the cycle files of a store on a background thread, off the read path of the tailers.
+ * <p>
+ * Cycles are marked for deletion by a {@link RetentionPolicy}, or because a subscriber reading with
+ * {@code deleteAfterRead} has passed them. A marked cycle is only deleted once no active subscriber
+ * of the store can read it anymore, until then its deletion is retried every second.
+ * <p>
+ * The files of all the stores are deleted by a single shared thread.
+ *
+ * @author mgabriel.
+ */
+final class RetentionManager implements Disposable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RetentionManager.class);
+    private static final Scheduler SCHEDULER = Schedulers.newSingle("ChronicleStoreRetention", true);
+    private static final long RETRY_DELAY_MILLIS = 1000;
+    private final SingleChronicleQueue queue;
+    private final RollCycle rollCycle;
+    private final ActiveReaders readers;
+    private final Supplier<NavigableSet<Long>> cycles;
+    private final RetentionPolicy policy;
+    private final StoreMetrics metrics;
+    private final Disposable periodicCheck;
+    private final NavigableSet<Integer> markedCycles = new ConcurrentSkipListSet<>();
+    private final AtomicBoolean retryScheduled = new AtomicBoolean();
+    private volatile Disposable retry = Disposables.disposed();
+    private volatile boolean disposed;
+
+    /**
+     * @param queue     queue of the store.
+     * @param rollCycle roll cycle of the queue.
+     * @param readers   active readers of the store.
+     * @param cycles    lists the cycles of the queue.
+     * @param policy    retention policy applied periodically, can be null.
+     */
+    RetentionManager(SingleChronicleQueue queue, RollCycle rollCycle, ActiveReaders readers,
+            Supplier<NavigableSet<Long>> cycles, RetentionPolicy policy) {
+        this(queue, rollCycle, readers, cycles, policy, StoreMetrics.NONE);
+    }
+
+    /**
+     * @param queue     queue of the store.
+     * @param rollCycle roll cycle of the queue.
+     * @param readers   active readers of the store.
+     * @param cycles    lists the cycles of the queue.
+     * @param policy    retention policy applied periodically, can be null.
+     * @param metrics   metrics notified of the deleted cycles.
+     */
+    RetentionManager(SingleChronicleQueue queue, RollCycle rollCycle, ActiveReaders readers,
+            Supplier<NavigableSet<Long>> cycles, RetentionPolicy policy, StoreMetrics metrics) {
+        this.queue = queue;
+        this.rollCycle = rollCycle;
+        this.readers = readers;
+        this.cycles = cycles;
+        this.policy = policy;
+        this.metrics = metrics;
+        if (policy != null) {
+            long interval = policy.checkInterval().toMillis();
+            periodicCheck = SCHEDULER.schedulePeriodically(this::applyPolicy, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            periodicCheck = Disposables.disposed();
+        }
+    }
+
+    /**
+     * Marks the cycles passed by a reader for deletion, they are deleted asynchronously.
+     *
+     * @param previousCycle cycle read before.
+     * @param cycle         current cycle of the reader.
+     */
+    void deletePassedCycles(int previousCycle, int cycle) {
+        markedCycles.add(previousCycle);
+        if (previousCycle > 0 && cycle - previousCycle > 1) {
+            for (Long passedCycle : cycles.get().subSet((long) previousCycle, false, (long) cycle, false)) {
+                markedCycles.add(passedCycle.intValue());
+            }
+        }
+        if (disposed) {
+            LOGGER.debug("Retention of queue {} is disposed, cycles not deleted", queue.fileAbsolutePath());
+            return;
+        }
+        SCHEDULER.schedule(() -> {
+            if (!disposed) {
+                deleteMarkedCycles();
+            }
+        });
+    }
+
+    //package private for testing
+    void applyPolicy() {
+        if (disposed) {
+            return;
+        }
+        try {
+            markExpiredCycles();
+            deleteMarkedCycles();
+        } catch (Exception e) {
+            LOGGER.error("Error while applying the retention policy of queue {}", queue.fileAbsolutePath(), e);
+        }
+    }
+
+    private void markExpiredCycles() {
+        NavigableSet<Long> allCycles = cycles.get();
+        if (allCycles.size() < 2) {
+            return; // the last cycle is never deleted
+        }
+        long lastCycle = allCycles.last();
+        List<Long> candidates = new ArrayList<>(allCycles.headSet(lastCycle, false));
+        int excessCycles = allCycles.size() - policy.maxCycles();
+        for (int i = 0; i < excessCycles && i < candidates.size(); i++) {
+            markedCycles.add(candidates.get(i).intValue());
+        }
+        long now = System.currentTimeMillis();
+        long totalBytes = 0;
+        for (Long cycle : allCycles.descendingSet()) {
+            WireStore wireStore = queue.storeForCycle(cycle.intValue(), queue.epoch(), false);
+            if (wireStore == null) {
+                continue;
+            }
+            long lastModified;
+            try {
+                // the length of the file includes the blocks pre-allocated by the queue, only the written data is counted
+                totalBytes += wireStore.writePosition();
+                File file = wireStore.file();
+                lastModified = file == null ? now : file.lastModified();
+            } finally {
+                queue.release(wireStore);
+            }
+            boolean tooOld = policy.maxAge() != null && now - lastModified > policy.maxAge().toMillis();
+            if (cycle != lastCycle && (totalBytes > policy.maxBytes() || tooOld)) {
+                markedCycles.add(cycle.intValue());
+            }
+        }
+        if (policy.deleteConsumedCycles()) {
+            int firstUnconsumedCycle = firstUnconsumedCycle();
+            for (Long cycle : candidates) {
+                if (cycle < firstUnconsumedCycle) {
+                    markedCycles.add(cycle.intValue());
+                }
+            }
+        }
+    }
+
+    private int firstUnconsumedCycle() {
+        long[] positions = ConsumerCheckpoint.positions(queue.file());
+        if (positions.length == 0) {
+            return Integer.MIN_VALUE;
+        }
+        int firstCycle = Integer.MAX_VALUE;
+        for (long position : positions) {
+            firstCycle = Math.min(firstCycle, rollCycle.toCycle(position));
+        }
+        return firstCycle;
+    }
+
+    private void deleteMarkedCycles() {
+        int deleted = 0;
+        synchronized (readers) {
+            int firstReadCycle = readers.firstReadCycle(rollCycle);
+            Iterator<Integer> iterator = markedCycles.iterator();
+            while (iterator.hasNext()) {
+                int cycle = iterator.next();
+                if (cycle >= firstReadCycle) {
+                    LOGGER.debug("cycle {} is still read, its deletion is postponed", cycle);
+                    scheduleRetry();
+                    break;
+                }
+                if (deleteFile(cycle)) {
+                    deleted++;
+                }
+                iterator.remove();
+            }
+        }
+        if (deleted > 0) {
+            metrics.onCyclesDeleted(deleted);
+        }
+    }
+
+    private void scheduleRetry() {
+        if (disposed || !retryScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        retry = SCHEDULER.schedule(() -> {
+            retryScheduled.set(false);
+            if (disposed) {
+                return;
+            }
+            try {
+                deleteMarkedCycles();
+            } catch (Exception e) {
+                LOGGER.error("Error while deleting the cycles of queue {}", queue.fileAbsolutePath(), e);
+            }
+        }, RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private boolean deleteFile(int cycle) {
+        WireStore wireStore = queue.storeForCycle(cycle, queue.epoch(), false);
+        if (wireStore != null) {
+            File file = wireStore.file();
+            queue.release(wireStore);
+            if (file != null) {
+                return deleteWireStore(file);
+            } else {
+                LOGGER.error("Could not find file for cycle {}", cycle);
+            }
+        } else {
+            LOGGER.trace("wirestore is null for cycle {}", cycle);
+        }
+        return false;
+    }
+
+    private boolean deleteWireStore(File file) {
+        try {
+            boolean deleted = file.delete();
+            logDeletionResult(file, deleted);
+            return deleted;
+        } catch (Exception e) {
+            LOGGER.error("Could not delete file {}", file.getAbsolutePath(), e);
+            return false;
+        }
+    }
+
+    private void logDeletionResult(File file, boolean deleted) {
+        if (deleted) {
+            LOGGER.trace("file {} deleted", file.getAbsolutePath());
+        } else {
+            LOGGER.error("Could not delete file {}", file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Stops the retention of the store, a deletion in progress on the shared thread completes.
+     */
+    @Override
+    public void dispose() {
+        disposed = true;
+        periodicCheck.dispose();
+        retry.dispose();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return disposed;
+    }
+}
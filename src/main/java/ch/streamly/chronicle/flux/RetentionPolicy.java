@@ -0,0 +1,125 @@
+package ch.streamly.chronicle.flux;
+
+import java.time.Duration;
+
+/**
+ * Rules used by a store to delete its oldest roll cycle files in the background.
+ * A cycle file is deleted as soon as one of the configured rules applies to it, but never while it is
+ * being written, or while an active subscriber of the store might still read it.
+ *
+ * @author mgabriel.
+ */
+public final class RetentionPolicy {
+    private final Duration maxAge;
+    private final long maxBytes;
+    private final int maxCycles;
+    private final boolean deleteConsumedCycles;
+    private final Duration checkInterval;
+
+    private RetentionPolicy(RetentionPolicyBuilder builder) {
+        maxAge = builder.maxAge;
+        maxBytes = builder.maxBytes;
+        maxCycles = builder.maxCycles;
+        deleteConsumedCycles = builder.deleteConsumedCycles;
+        checkInterval = builder.checkInterval;
+    }
+
+    /**
+     * @return a retention policy builder.
+     */
+    public static RetentionPolicyBuilder newBuilder() {
+        return new RetentionPolicyBuilder();
+    }
+
+    Duration maxAge() {
+        return maxAge;
+    }
+
+    long maxBytes() {
+        return maxBytes;
+    }
+
+    int maxCycles() {
+        return maxCycles;
+    }
+
+    boolean deleteConsumedCycles() {
+        return deleteConsumedCycles;
+    }
+
+    Duration checkInterval() {
+        return checkInterval;
+    }
+
+    public static final class RetentionPolicyBuilder {
+        private Duration maxAge;
+        private long maxBytes = Long.MAX_VALUE;
+        private int maxCycles = Integer.MAX_VALUE;
+        private boolean deleteConsumedCycles;
+        private Duration checkInterval = Duration.ofMinutes(1);
+
+        private RetentionPolicyBuilder() {
+        }
+
+        /**
+         * @param maxAge a cycle file is deleted once it has not been written for this duration.
+         * @return this builder
+         */
+        public RetentionPolicyBuilder maxAge(Duration maxAge) {
+            this.maxAge = maxAge;
+            return this;
+        }
+
+        /**
+         * The size of a cycle file is the size of the data written in it (its write position), not the length of
+         * the file, which includes the blocks pre-allocated by the queue.
+         *
+         * @param maxBytes the oldest cycle files are deleted while the total size of the files exceeds this limit.
+         * @return this builder
+         */
+        public RetentionPolicyBuilder maxBytes(long maxBytes) {
+            if (maxBytes < 0) {
+                throw new IllegalArgumentException("the maximum size must be positive, got " + maxBytes);
+            }
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * @param maxCycles the oldest cycle files are deleted while there are more cycles than this limit.
+         * @return this builder
+         */
+        public RetentionPolicyBuilder maxCycles(int maxCycles) {
+            if (maxCycles < 1) {
+                throw new IllegalArgumentException("at least one cycle must be kept, got " + maxCycles);
+            }
+            this.maxCycles = maxCycles;
+            return this;
+        }
+
+        /**
+         * A cycle file is deleted once all the named consumers of the store have read it
+         * (see {@link AbstractChronicleStore#retrieveAll(String)}). Nothing is deleted by this rule if the store
+         * has no named consumer.
+         *
+         * @return this builder
+         */
+        public RetentionPolicyBuilder deleteConsumedCycles() {
+            this.deleteConsumedCycles = true;
+            return this;
+        }
+
+        /**
+         * @param checkInterval interval between two applications of the policy, 1 minute by default.
+         * @return this builder
+         */
+        public RetentionPolicyBuilder checkInterval(Duration checkInterval) {
+            this.checkInterval = checkInterval;
+            return this;
+        }
+
+        public RetentionPolicy build() {
+            return new RetentionPolicy(this);
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package ch.streamly.chronicle.flux;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.Disposable;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Operators;
+import reactor.util.annotation.NonNull;
+
+/**
+ * A single tailer reading the new values of a store, shared by many subscribers.
+ * Each value is read and deserialized once, and dispatched to all the subscribers.
+ * The tailer is started with the first subscriber and stopped when the last one leaves.
+ * <p>
+ * The shared tailer never waits for the subscribers, each subscriber has its own buffer and
+ * a {@link SlowSubscriberPolicy} defining what happens when it does not keep up.
+ *
+ * @param <T> data type
+ * @author mgabriel.
+ */
+final class SharedTail<T> implements Disposable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedTail.class);
+    private final Supplier<Flux<IndexedValue<T>>> source;
+    private final Function<Position, Flux<IndexedValue<T>>> catchUpSource;
+    private final Supplier<? extends Throwable> disposedError;
+    private final List<SharedSubscription<T>> subscribers = new CopyOnWriteArrayList<>();
+    private Disposable connection;
+    private boolean connected;
+    private boolean disposed;
+    private long lastIndex = Long.MIN_VALUE;
+    private int ordinal;
+
+    /**
+     * @param source        new values of the store.
+     * @param catchUpSource values of the store from a given excerpt, followed by the new values.
+     * @param disposedError error signalled to the subscribers when the shared tailer is disposed.
+     */
+    SharedTail(Supplier<Flux<IndexedValue<T>>> source, Function<Position, Flux<IndexedValue<T>>> catchUpSource,
+            Supplier<? extends Throwable> disposedError) {
+        this.source = source;
+        this.catchUpSource = catchUpSource;
+        this.disposedError = disposedError;
+    }
+
+    /**
+     * @param policy     behavior when the subscriber does not keep up.
+     * @param bufferSize maximum number of values buffered for the subscriber.
+     * @return the new values of the store.
+     */
+    Flux<T> subscribe(SlowSubscriberPolicy policy, int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("the buffer size must be positive, got " + bufferSize);
+        }
+        return Flux.defer(() -> {
+            SharedSubscription<T> subscription = new SharedSubscription<>(this, policy, bufferSize);
+            if (policy != SlowSubscriberPolicy.DETACH) {
+                return subscription;
+            }
+            // once detached, the subscriber keeps its own reader until it cancels
+            return Flux.concat(subscription, Flux.defer(() -> subscription.resumePosition == null ?
+                    Flux.empty() : catchUp(subscription.resumePosition)));
+        });
+    }
+
+    private Flux<T> catchUp(Position position) {
+        int[] skipped = {0};
+        return catchUpSource.apply(position)
+                .filter(v -> v.index() != position.index || skipped[0]++ >= position.ordinal)
+                .map(IndexedValue::value);
+    }
+
+    private synchronized void add(SharedSubscription<T> subscription) {
+        if (disposed) {
+            throw new IllegalStateException("the store is closed");
+        }
+        subscribers.add(subscription);
+        if (!connected) {
+            connected = true;
+            Disposable newConnection = source.get().subscribe(this::dispatch, this::onError, this::onComplete);
+            if (connected) { // the source may terminate during the subscription
+                connection = newConnection;
+            }
+        }
+    }
+
+    private synchronized void remove(SharedSubscription<T> subscription) {
+        if (subscribers.remove(subscription) && subscribers.isEmpty() && connected) {
+            disconnect();
+        }
+    }
+
+    private void disconnect() {
+        connected = false;
+        if (connection != null) {
+            connection.dispose();
+            connection = null;
+        }
+    }
+
+    private synchronized void onError(Throwable error) {
+        LOGGER.error("Error while sharing the new values", error);
+        terminate(error);
+    }
+
+    private synchronized void onComplete() {
+        terminate(null);
+    }
+
+    /**
+     * Terminates the current subscribers, the next subscriber connects a new tailer.
+     */
+    private void terminate(Throwable error) {
+        disconnect();
+        for (SharedSubscription<T> subscriber : subscribers) {
+            subscriber.finish(error);
+        }
+        subscribers.clear();
+    }
+
+    private void dispatch(IndexedValue<T> value) {
+        ordinal = value.index() == lastIndex ? ordinal + 1 : 0; // position of the value in a batched excerpt
+        lastIndex = value.index();
+        for (SharedSubscription<T> subscriber : subscribers) {
+            subscriber.offer(value, ordinal);
+        }
+    }
+
+    @Override
+    public synchronized void dispose() {
+        disposed = true;
+        terminate(disposedError.get());
+    }
+
+    @Override
+    public synchronized boolean isDisposed() {
+        return disposed;
+    }
+
+    /**
+     * Position of a value: index of its excerpt and position in the excerpt.
+     */
+    static final class Position {
+        final long index;
+        final int ordinal;
+
+        Position(long index, int ordinal) {
+            this.index = index;
+            this.ordinal = ordinal;
+        }
+    }
+
+    private static final class SharedSubscription<T> extends Flux<T> implements Subscription {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicLongFieldUpdater<SharedSubscription> REQUESTED =
+                AtomicLongFieldUpdater.newUpdater(SharedSubscription.class, "requested");
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<SharedSubscription> WIP =
+                AtomicIntegerFieldUpdater.newUpdater(SharedSubscription.class, "wip");
+        private final SharedTail<T> parent;
+        private final SlowSubscriberPolicy policy;
+        private final int bufferSize;
+        private final Queue<T> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicReference<T> latest = new AtomicReference<>();
+        private CoreSubscriber<? super T> actual;
+        private volatile long requested;
+        private volatile int wip;
+        private volatile boolean done;
+        private volatile boolean cancelled;
+        private volatile Throwable error;
+        private Position resumePosition;
+
+        private SharedSubscription(SharedTail<T> parent, SlowSubscriberPolicy policy, int bufferSize) {
+            this.parent = parent;
+            this.policy = policy;
+            this.bufferSize = bufferSize;
+        }
+
+        @Override
+        public void subscribe(@NonNull CoreSubscriber<? super T> actual) {
+            this.actual = actual;
+            actual.onSubscribe(this);
+            try {
+                parent.add(this);
+            } catch (IllegalStateException e) {
+                error = e;
+                done = true;
+                drain();
+            }
+        }
+
+        private void offer(IndexedValue<T> value, int ordinal) {
+            if (done) {
+                return;
+            }
+            if (policy == SlowSubscriberPolicy.CONFLATE) {
+                latest.set(value.value());
+            } else if (size.get() < bufferSize) {
+                queue.offer(value.value());
+                size.incrementAndGet();
+            } else if (policy == SlowSubscriberPolicy.DETACH) {
+                resumePosition = new Position(value.index(), ordinal);
+                done = true;
+                parent.remove(this);
+            } else {
+                error = Exceptions.failWithOverflow("The subscriber does not keep up with the shared new values");
+                done = true;
+                parent.remove(this);
+            }
+            drain();
+        }
+
+        private void finish(Throwable error) {
+            if (done) {
+                return;
+            }
+            this.error = error;
+            done = true;
+            drain();
+        }
+
+        private T poll() {
+            if (policy == SlowSubscriberPolicy.CONFLATE) {
+                return latest.getAndSet(null);
+            }
+            T value = queue.poll();
+            if (value != null) {
+                size.decrementAndGet();
+            }
+            return value;
+        }
+
+        @Override
+        public void request(long n) {
+            if (Operators.validate(n)) {
+                Operators.addCap(REQUESTED, this, n);
+                drain();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            parent.remove(this);
+        }
+
+        private void drain() {
+            if (WIP.getAndIncrement(this) != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (error != null) {
+                    queue.clear();
+                    terminate();
+                    return;
+                }
+                long r = requested;
+                long emitted = 0;
+                while (emitted != r) {
+                    if (cancelled) {
+                        return;
+                    }
+                    boolean terminated = done;
+                    T value = poll();
+                    if (value == null) {
+                        if (terminated) {
+                            terminate();
+                            return;
+                        }
+                        break;
+                    }
+                    actual.onNext(value);
+                    emitted++;
+                }
+                if (emitted == r && done && queue.isEmpty() && latest.get() == null) {
+                    terminate();
+                    return;
+                }
+                if (emitted != 0 && r != Long.MAX_VALUE) {
+                    Operators.produced(REQUESTED, this, emitted);
+                }
+                missed = WIP.addAndGet(this, -missed);
+            } while (missed != 0);
+        }
+
+        private void terminate() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            if (error != null) {
+                actual.onError(error);
+            } else {
+                actual.onComplete();
+            }
+        }
+    }
+}
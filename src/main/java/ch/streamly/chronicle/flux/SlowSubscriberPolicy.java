@@ -0,0 +1,24 @@
+package ch.streamly.chronicle.flux;
+
+/**
+ * Behavior of a subscriber of the shared new values of a store when it does not keep up with the new values.
+ *
+ * @author mgabriel.
+ */
+public enum SlowSubscriberPolicy {
+    /**
+     * The values are buffered until the subscriber requests them. If the buffer is full, the subscriber
+     * receives an overflow error.
+     */
+    BUFFER,
+    /**
+     * Only the latest value is kept until the subscriber requests it, the previous values are dropped.
+     */
+    CONFLATE,
+    /**
+     * The values are buffered until the subscriber requests them. If the buffer is full, the subscriber is
+     * detached from the shared reader: it continues with its own reader from the first value it missed,
+     * without any loss, for the rest of its subscription (it does not rejoin the shared reader).
+     */
+    DETACH
+}
@@ -0,0 +1,63 @@
+package ch.streamly.chronicle.flux;
+
+import java.util.function.Supplier;
+
+import ch.streamly.chronicle.flux.TailerSubscription.CycleListener;
+import ch.streamly.chronicle.flux.TailerSubscription.ExcerptReader;
+import ch.streamly.chronicle.flux.TailerSubscription.PositionListener;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.RollCycle;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Operators;
+import reactor.util.annotation.NonNull;
+
+/**
+ * A flux reading the values of a Chronicle Queue. A new tailer is created for each subscriber,
+ * and served by a {@link TailerRuntime}.
+ *
+ * @param <T> data type
+ * @author mgabriel.
+ */
+final class TailerFlux<T> extends Flux<T> {
+    private final Supplier<ExcerptTailer> tailerSupplier;
+    private final ExcerptReader<T> reader;
+    private final boolean onlyHistory;
+    private final TailerRuntime runtime;
+    private final RollCycle rollCycle;
+    private final CycleListener cycleListener;
+    private final Supplier<PositionListener> positionListeners;
+
+    TailerFlux(Supplier<ExcerptTailer> tailerSupplier, ExcerptReader<T> reader, boolean onlyHistory,
+            TailerRuntime runtime, RollCycle rollCycle, CycleListener cycleListener,
+            Supplier<PositionListener> positionListeners) {
+        this.tailerSupplier = tailerSupplier;
+        this.reader = reader;
+        this.onlyHistory = onlyHistory;
+        this.runtime = runtime;
+        this.rollCycle = rollCycle;
+        this.cycleListener = cycleListener;
+        this.positionListeners = positionListeners;
+    }
+
+    @Override
+    public void subscribe(@NonNull CoreSubscriber<? super T> actual) {
+        if (runtime.isDisposed()) {
+            Operators.error(actual, runtime.disposedError());
+            return;
+        }
+        PositionListener positionListener = positionListeners.get(); // before the tailer is positioned
+        ExcerptTailer tailer;
+        try {
+            tailer = tailerSupplier.get();
+        } catch (RuntimeException e) {
+            positionListener.onTerminate(); // unregisters the reader
+            Operators.error(actual, e);
+            return;
+        }
+        TailerSubscription<T> subscription = new TailerSubscription<>(actual, tailer, reader,
+                onlyHistory, runtime, rollCycle, cycleListener, positionListener);
+        actual.onSubscribe(subscription);
+        runtime.submit(subscription);
+    }
+}
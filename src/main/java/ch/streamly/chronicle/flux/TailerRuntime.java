@@ -0,0 +1,254 @@
+package ch.streamly.chronicle.flux;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.streamly.chronicle.flux.WaitStrategy.Waiter;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Reader runtime that multiplexes the tailers of many subscriptions on a small, fixed number of workers.
+ * Each worker serves its tailers in round-robin, based on their outstanding demand, and uses the
+ * configured {@link WaitStrategy} when none of them has any work to do.
+ * <p>
+ * A runtime can be shared by several stores. Since the values are emitted on the runtime workers,
+ * a subscriber that blocks in onNext slows down all the other subscribers of the same worker:
+ * use publishOn to move slow processing to another scheduler.
+ *
+ * @author mgabriel.
+ */
+public final class TailerRuntime implements Disposable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TailerRuntime.class);
+    private static final AtomicInteger RUNTIME_COUNT = new AtomicInteger();
+    private final Worker[] workers;
+    private final Scheduler scheduler;
+    private final String name;
+    private final AtomicBoolean disposed = new AtomicBoolean(false);
+
+    private TailerRuntime(int workerCount, WaitStrategy waitStrategy, Scheduler scheduler) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("a tailer runtime needs at least one worker, got " + workerCount);
+        }
+        this.scheduler = scheduler;
+        this.name = "ChronicleStoreReader-" + RUNTIME_COUNT.incrementAndGet();
+        workers = new Worker[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Worker(name + "-" + i, waitStrategy.newWaiter());
+        }
+    }
+
+    /**
+     * @param threads      number of reader threads, the threads are daemon threads started on the first subscription.
+     * @param waitStrategy strategy used by the reader threads when they are idle.
+     * @return a runtime with its own reader threads.
+     */
+    public static TailerRuntime newRuntime(int threads, WaitStrategy waitStrategy) {
+        return new TailerRuntime(threads, waitStrategy, null);
+    }
+
+    /**
+     * @param scheduler    scheduler used to run the workers. Each worker permanently occupies one thread of the scheduler
+     *                     until this runtime is disposed, the scheduler must therefore have at least {@code workers} threads.
+     * @param workers      number of workers.
+     * @param waitStrategy strategy used by the workers when they are idle.
+     * @return a runtime running on the given scheduler.
+     */
+    public static TailerRuntime fromScheduler(Scheduler scheduler, int workers, WaitStrategy waitStrategy) {
+        return new TailerRuntime(workers, waitStrategy, scheduler);
+    }
+
+    /**
+     * Adds a task to the least loaded worker. The task is cancelled if this runtime is disposed.
+     *
+     * @param task the task to serve.
+     */
+    void submit(TailerTask task) {
+        if (disposed.get()) {
+            task.cancel(disposedError());
+            return;
+        }
+        Worker worker = workers[0];
+        for (int i = 1; i < workers.length; i++) {
+            if (workers[i].taskCount.get() < worker.taskCount.get()) {
+                worker = workers[i];
+            }
+        }
+        worker.add(task);
+        if (disposed.get() && worker.added.remove(task)) {
+            // disposed concurrently, the worker may already have cancelled its tasks
+            task.cancel(disposedError());
+        }
+    }
+
+    /**
+     * @return the error signalled to the subscriptions of a disposed runtime.
+     */
+    IllegalStateException disposedError() {
+        return new IllegalStateException("tailer runtime " + name + " is disposed");
+    }
+
+    /**
+     * Wakes up all the idle workers (e.g. when a value has been appended).
+     */
+    void signal() {
+        for (Worker worker : workers) {
+            worker.waiter.signal();
+        }
+    }
+
+    //package private for testing
+    String name() {
+        return name;
+    }
+
+    /**
+     * Stops the workers, the subscriptions they serve are terminated with an error.
+     */
+    @Override
+    public void dispose() {
+        if (disposed.compareAndSet(false, true)) {
+            for (Worker worker : workers) {
+                worker.stop();
+            }
+        }
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return disposed.get();
+    }
+
+    /**
+     * A unit of work served by a runtime worker, typically a tailer feeding a subscriber.
+     */
+    interface TailerTask {
+
+        /**
+         * Performs a bounded amount of work. Never called concurrently.
+         *
+         * @return the number of values emitted during this pass.
+         */
+        int poll();
+
+        /**
+         * @return true if this task will not produce any more values and can be removed from its worker.
+         */
+        boolean isTerminated();
+
+        /**
+         * Terminates the task with an error, when the runtime is disposed. Never called concurrently with {@link #poll()}.
+         *
+         * @param error error signalled to the subscriber.
+         */
+        void cancel(Throwable error);
+    }
+
+    private final class Worker implements Runnable {
+        private final String workerName;
+        private final Waiter waiter;
+        private final Queue<TailerTask> added = new ConcurrentLinkedQueue<>();
+        private final List<TailerTask> tasks = new ArrayList<>();
+        private final AtomicInteger taskCount = new AtomicInteger();
+        private final AtomicBoolean started = new AtomicBoolean(false);
+        private volatile boolean running = true;
+        private volatile Disposable scheduled;
+
+        private Worker(String workerName, Waiter waiter) {
+            this.workerName = workerName;
+            this.waiter = waiter;
+        }
+
+        private void add(TailerTask task) {
+            taskCount.incrementAndGet();
+            added.add(task);
+            if (started.compareAndSet(false, true)) {
+                start();
+            }
+            waiter.signal();
+        }
+
+        private void start() {
+            if (scheduler == null) {
+                Thread t = new Thread(this, workerName);
+                t.setDaemon(true);
+                t.start();
+            } else {
+                scheduled = scheduler.schedule(this);
+            }
+        }
+
+        private void stop() {
+            running = false;
+            waiter.signal();
+            Disposable task = scheduled;
+            if (task != null) {
+                task.dispose();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                TailerTask task;
+                while ((task = added.poll()) != null) {
+                    tasks.add(task);
+                }
+                int work = 0;
+                for (Iterator<TailerTask> it = tasks.iterator(); it.hasNext(); ) {
+                    work += pollTask(it);
+                }
+                if (work > 0) {
+                    waiter.reset();
+                } else {
+                    waiter.idle();
+                }
+            }
+            cancelTasks();
+        }
+
+        private void cancelTasks() {
+            TailerTask task;
+            while ((task = added.poll()) != null) {
+                tasks.add(task);
+            }
+            IllegalStateException error = disposedError();
+            for (TailerTask t : tasks) {
+                if (!t.isTerminated()) {
+                    t.cancel(error);
+                }
+            }
+            tasks.clear();
+            taskCount.set(0);
+        }
+
+        private int pollTask(Iterator<TailerTask> it) {
+            TailerTask task = it.next();
+            int work = 0;
+            try {
+                work = task.poll();
+            } catch (Exception e) {
+                LOGGER.error("Unexpected error in tailer task of {}", workerName, e);
+                remove(it);
+                return 0;
+            }
+            if (task.isTerminated()) {
+                remove(it);
+            }
+            return work;
+        }
+
+        private void remove(Iterator<TailerTask> it) {
+            it.remove();
+            taskCount.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package ch.streamly.chronicle.flux;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.streamly.chronicle.flux.TailerRuntime.TailerTask;
+import net.openhft.chronicle.bytes.BytesIn;
+import net.openhft.chronicle.bytes.ReadBytesMarshallable;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.RollCycle;
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Operators;
+
+/**
+ * Subscription reading the values of a tailer for a single subscriber.
+ * On each pass of its {@link TailerRuntime} worker, it emits as many values as requested by the subscriber
+ * (bounded by {@link #MAX_VALUES_PER_PASS} to stay fair with the other subscriptions of the worker).
+ * The roll cycle is only checked once per pass.
+ * <p>
+ * An excerpt can contain several values (see batched appends), when an excerpt holds more values than requested,
+ * the remaining values are kept until the subscriber requests more.
+ *
+ * @param <T> data type
+ * @author mgabriel.
+ */
+final class TailerSubscription<T> implements Subscription, TailerTask, ReadBytesMarshallable {
+    static final int MAX_VALUES_PER_PASS = 1024;
+    private static final Logger LOGGER = LoggerFactory.getLogger(TailerSubscription.class);
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<TailerSubscription> REQUESTED =
+            AtomicLongFieldUpdater.newUpdater(TailerSubscription.class, "requested");
+    private final CoreSubscriber<? super T> actual;
+    private final ExcerptTailer tailer;
+    private final ExcerptReader<T> reader;
+    private final boolean onlyHistory;
+    private final TailerRuntime runtime;
+    private final RollCycle rollCycle;
+    private final CycleListener cycleListener;
+    private final PositionListener positionListener;
+    private volatile long requested;
+    private volatile boolean cancelled;
+    private boolean terminated;
+    private final Queue<T> pending = new ArrayDeque<>();
+    private long limit;
+    private int emitted;
+    private int previousCycle = 0;
+    private long excerptIndex;
+
+    TailerSubscription(CoreSubscriber<? super T> actual, ExcerptTailer tailer, ExcerptReader<T> reader,
+            boolean onlyHistory, TailerRuntime runtime, RollCycle rollCycle, CycleListener cycleListener,
+            PositionListener positionListener) {
+        this.actual = actual;
+        this.tailer = tailer;
+        this.reader = reader;
+        this.onlyHistory = onlyHistory;
+        this.runtime = runtime;
+        this.rollCycle = rollCycle;
+        this.cycleListener = cycleListener;
+        this.positionListener = positionListener;
+        positionListener.onPosition(tailer.index());
+    }
+
+    @Override
+    public void request(long n) {
+        if (Operators.validate(n)) {
+            Operators.addCap(REQUESTED, this, n);
+            runtime.signal();
+        }
+    }
+
+    @Override
+    public void cancel() {
+        cancelled = true;
+        runtime.signal();
+    }
+
+    @Override
+    public void cancel(Throwable error) {
+        if (!terminated) {
+            terminate();
+            if (!cancelled) {
+                actual.onError(error);
+            }
+        }
+    }
+
+    @Override
+    public int poll() {
+        if (cancelled) {
+            terminate();
+            return 0;
+        }
+        long r = requested;
+        if (r == 0) {
+            return 0; // wait for requests
+        }
+        try {
+            return drain(r);
+        } catch (Exception e) {
+            LOGGER.error("Error while tailing on queue {}", tailer.queue().file().getAbsolutePath(), e);
+            terminate();
+            actual.onError(e);
+            return 0;
+        }
+    }
+
+    private int drain(long r) {
+        limit = Math.min(r, MAX_VALUES_PER_PASS);
+        emitted = 0;
+        emitPending();
+        while (emitted < limit && !cancelled) {
+            int before = emitted;
+            if (!tailer.readBytes(this)) {
+                if (onlyHistory && pending.isEmpty()) {
+                    terminate();
+                    actual.onComplete();
+                }
+                break;
+            }
+            if (emitted == before) {
+                break; // document without any value, give the other tasks a chance to run
+            }
+        }
+        int done = emitted;
+        if (done > 0) {
+            if (r != Long.MAX_VALUE) {
+                Operators.produced(REQUESTED, this, done);
+            }
+            positionListener.onEmitted(done);
+        }
+        checkCycle();
+        if (!terminated) {
+            // the values of an excerpt partially emitted will be read again after a restart
+            positionListener.onPosition(pending.isEmpty() ? tailer.index() : excerptIndex);
+        }
+        return done;
+    }
+
+    private void emitPending() {
+        T value;
+        while (emitted < limit && !cancelled && (value = pending.poll()) != null) {
+            actual.onNext(value);
+            emitted++;
+        }
+    }
+
+    @Override
+    public void readMarshallable(BytesIn bytes) {
+        long index = tailer.index();
+        excerptIndex = index;
+        do {
+            T value = reader.read(bytes, index);
+            if (emitted < limit && !cancelled) {
+                actual.onNext(value);
+                emitted++;
+            } else {
+                pending.add(value);
+            }
+        } while (hasNextValue(bytes));
+    }
+
+    /**
+     * The queue pads an excerpt with up to 3 bytes so that the next header is aligned, the padding is shorter
+     * than the length of a value.
+     *
+     * @param bytes bytes of an excerpt, positioned after a value.
+     * @return true if another value of the batch follows.
+     */
+    static boolean hasNextValue(BytesIn bytes) {
+        return bytes.readRemaining() >= Integer.BYTES;
+    }
+
+    private void checkCycle() {
+        int cycle = rollCycle.toCycle(tailer.index());
+        if (cycle != previousCycle) {
+            cycleListener.onCycleChange(previousCycle, cycle);
+            previousCycle = cycle;
+        }
+    }
+
+    private void terminate() {
+        terminated = true;
+        positionListener.onTerminate();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated;
+    }
+
+    /**
+     * Reads a value of an excerpt.
+     *
+     * @param <T> data type
+     */
+    interface ExcerptReader<T> {
+        /**
+         * @param bytes bytes of the excerpt, positioned at the beginning of the value.
+         * @param index index of the excerpt.
+         * @return the value read.
+         */
+        T read(BytesIn bytes, long index);
+    }
+
+    /**
+     * Listener notified of the read position of a tailer, once per pass.
+     */
+    interface PositionListener {
+        PositionListener NONE = index -> {
+        };
+
+        /**
+         * @param index index of the next excerpt to read, all the values of the previous excerpts have been emitted.
+         */
+        void onPosition(long index);
+
+        /**
+         * @param values number of values emitted during the last pass.
+         */
+        default void onEmitted(int values) {
+        }
+
+        /**
+         * Called once the tailer stops reading.
+         */
+        default void onTerminate() {
+        }
+    }
+
+    /**
+     * Listener notified when a tailer moves to another roll cycle.
+     */
+    interface CycleListener {
+        CycleListener NONE = (previousCycle, cycle) -> {
+        };
+
+        /**
+         * @param previousCycle cycle of the values read before.
+         * @param cycle         current cycle.
+         */
+        void onCycleChange(int previousCycle, int cycle);
+    }
+}
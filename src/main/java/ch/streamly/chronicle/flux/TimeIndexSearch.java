@@ -0,0 +1,144 @@
+package ch.streamly.chronicle.flux;
+
+import java.util.NavigableSet;
+import java.util.function.ToLongFunction;
+
+import net.openhft.chronicle.bytes.BytesIn;
+import net.openhft.chronicle.bytes.ReadBytesMarshallable;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.RollCycle;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueue;
+
+/**
+ * Binary search of the first excerpt of a queue timed at or after a given time, first over the roll cycles,
+ * then over the excerpts of a cycle. The time of the excerpts is expected to increase with their index.
+ * Only the time of the first value of the visited excerpts is read, their values are not deserialized.
+ * An excerpt can contain a batch of values, the values timed at or after a given time can therefore start
+ * in the excerpt preceding the first excerpt timed at or after this time.
+ *
+ * @author mgabriel.
+ */
+final class TimeIndexSearch implements ReadBytesMarshallable {
+    static final long NOT_FOUND = -1;
+    private final SingleChronicleQueue queue;
+    private final NavigableSet<Long> cycles;
+    private final ExcerptTailer tailer;
+    private final RollCycle rollCycle;
+    private final ToLongFunction<BytesIn> timeReader;
+    private long excerptTime;
+
+    /**
+     * @param queue      queue to search.
+     * @param cycles     roll cycles of the queue.
+     * @param tailer     tailer used to visit the excerpts, its position is modified by the search.
+     * @param timeReader reads the time at the beginning of an excerpt.
+     */
+    TimeIndexSearch(SingleChronicleQueue queue, NavigableSet<Long> cycles, ExcerptTailer tailer,
+            ToLongFunction<BytesIn> timeReader) {
+        this.queue = queue;
+        this.cycles = cycles;
+        this.tailer = tailer;
+        this.rollCycle = queue.rollCycle();
+        this.timeReader = timeReader;
+    }
+
+    /**
+     * @param time epoch time in ms.
+     * @return the index of the excerpt from which the values timed at or after the given time must be read
+     * (the last excerpt whose first value is timed before the given time, if any), or {@link #NOT_FOUND}
+     * if the queue is empty.
+     */
+    long startIndex(long time) {
+        long index = firstIndexAtOrAfter(time);
+        long previous = index == NOT_FOUND ? lastIndex() : previousIndex(index);
+        return previous == NOT_FOUND ? index : previous;
+    }
+
+    /**
+     * @param time epoch time in ms.
+     * @return the index of the first excerpt whose first value is timed at or after the given time,
+     * or {@link #NOT_FOUND}.
+     */
+    long firstIndexAtOrAfter(long time) {
+        Long[] cycles = this.cycles.toArray(new Long[0]);
+        int lo = 0;
+        int hi = cycles.length - 1;
+        int candidate = 0;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long firstTime = timeAt(rollCycle.toIndex(cycles[mid].intValue(), 0));
+            if (firstTime <= time) {
+                candidate = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        for (int i = candidate; i < cycles.length; i++) {
+            long index = searchInCycle(cycles[i].intValue(), time);
+            if (index != NOT_FOUND) {
+                return index;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    private long searchInCycle(int cycle, long time) {
+        long lo = 0;
+        long hi = queue.exceptsPerCycle(cycle) - 1;
+        long result = NOT_FOUND;
+        while (lo <= hi) {
+            long mid = (lo + hi) >>> 1;
+            long index = rollCycle.toIndex(cycle, mid);
+            if (timeAt(index) >= time) {
+                result = index;
+                hi = mid - 1;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return result;
+    }
+
+    private long previousIndex(long index) {
+        long sequence = rollCycle.toSequenceNumber(index);
+        if (sequence > 0) {
+            return index - 1;
+        }
+        return lastIndexBefore(rollCycle.toCycle(index));
+    }
+
+    private long lastIndex() {
+        return lastIndexBefore(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return the index of the last excerpt of the cycles before the given cycle, or {@link #NOT_FOUND}.
+     */
+    private long lastIndexBefore(int cycle) {
+        for (Long previous = cycles.lower((long) cycle); previous != null; previous = cycles.lower(previous)) {
+            long count = queue.exceptsPerCycle(previous.intValue());
+            if (count > 0) {
+                return rollCycle.toIndex(previous.intValue(), count - 1);
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * @return the time of the excerpt, or {@link Long#MAX_VALUE} if there is no excerpt at this index.
+     */
+    private long timeAt(long index) {
+        if (!tailer.moveToIndex(index)) {
+            return Long.MAX_VALUE;
+        }
+        excerptTime = Long.MAX_VALUE;
+        tailer.readBytes(this);
+        return excerptTime;
+    }
+
+    @Override
+    public void readMarshallable(BytesIn bytes) {
+        excerptTime = timeReader.applyAsLong(bytes);
+    }
+}
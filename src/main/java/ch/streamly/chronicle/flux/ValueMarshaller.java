@@ -0,0 +1,50 @@
+package ch.streamly.chronicle.flux;
+
+import java.util.function.Function;
+
+import net.openhft.chronicle.bytes.BytesIn;
+import net.openhft.chronicle.bytes.BytesOut;
+
+/**
+ * Serializes values directly into the memory of a Chronicle Queue, and deserializes them directly from it.
+ * Compared to byte array serializers, this avoids allocating and copying an intermediate array for each value.
+ *
+ * @param <T> data type
+ * @author mgabriel.
+ */
+public interface ValueMarshaller<T> {
+
+    /**
+     * @param out   bytes of the excerpt being written.
+     * @param value value to serialize.
+     */
+    void write(BytesOut<?> out, T value);
+
+    /**
+     * @param in bytes of the value, the read limit is set at the end of the value.
+     * @return the deserialized value.
+     */
+    T read(BytesIn<?> in);
+
+    /**
+     * @param serializer   data serializer
+     * @param deserializer data deserializer
+     * @param <T>          data type
+     * @return a marshaller delegating to byte array serializers.
+     */
+    static <T> ValueMarshaller<T> fromByteArrays(Function<T, byte[]> serializer, Function<byte[], T> deserializer) {
+        return new ValueMarshaller<T>() {
+            @Override
+            public void write(BytesOut<?> out, T value) {
+                out.write(serializer.apply(value));
+            }
+
+            @Override
+            public T read(BytesIn<?> in) {
+                byte[] bytes = new byte[(int) in.readRemaining()];
+                in.read(bytes);
+                return deserializer.apply(bytes);
+            }
+        };
+    }
+}
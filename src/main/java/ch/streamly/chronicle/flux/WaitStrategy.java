@@ -0,0 +1,76 @@
+package ch.streamly.chronicle.flux;
+
+import java.time.Duration;
+
+/**
+ * Strategy used by the store readers when there is nothing to do
+ * (no new value on the queue, or no outstanding demand from downstream).
+ * <p>
+ * Spinning strategies give the lowest latency at the cost of a full CPU core per reader,
+ * parking strategies release the CPU and rely on {@link Waiter#signal()} to be woken up as soon as
+ * new demand arrives or a value is appended through the store.
+ *
+ * @author mgabriel.
+ */
+public interface WaitStrategy {
+
+    /**
+     * @return a new waiter. A waiter is not thread safe and must only be used by a single reader thread,
+     * with the exception of {@link Waiter#signal()} that can be called from any thread.
+     */
+    Waiter newWaiter();
+
+    /**
+     * @return a strategy that never releases the CPU, for the lowest possible latency.
+     */
+    static WaitStrategy busySpin() {
+        return BusySpinWaiter::new;
+    }
+
+    /**
+     * @return a strategy that yields the CPU to other threads between two attempts.
+     */
+    static WaitStrategy yielding() {
+        return YieldingWaiter::new;
+    }
+
+    /**
+     * @param spins   number of idle attempts spent busy spinning.
+     * @param yields  number of idle attempts spent yielding, once the spins are exhausted.
+     * @param maxPark maximum park duration, the park duration doubles on each attempt until it reaches this value.
+     * @return a strategy that progressively backs off from spinning to yielding and then parking the reader thread.
+     */
+    static WaitStrategy backoff(int spins, int yields, Duration maxPark) {
+        return () -> new BackoffWaiter(spins, yields, maxPark.toNanos());
+    }
+
+    /**
+     * @param maxWait maximum time to wait before checking the queue again.
+     *                Values appended by another process do not wake up the reader, they are seen after at most this delay.
+     * @return a strategy that parks the reader thread until new demand is received or a value is appended through the store.
+     */
+    static WaitStrategy blocking(Duration maxWait) {
+        return () -> new BackoffWaiter(0, 0, maxWait.toNanos(), maxWait.toNanos());
+    }
+
+    /**
+     * Per reader handle of a {@link WaitStrategy}.
+     */
+    interface Waiter {
+
+        /**
+         * Called by the reader thread when there is nothing to do.
+         */
+        void idle();
+
+        /**
+         * Called by the reader thread when some work has been done.
+         */
+        void reset();
+
+        /**
+         * Wakes up the reader thread if it is currently idle. Can be called from any thread.
+         */
+        void signal();
+    }
+}
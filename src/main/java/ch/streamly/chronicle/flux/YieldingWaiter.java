@@ -0,0 +1,24 @@
+package ch.streamly.chronicle.flux;
+
+/**
+ * A waiter that yields the CPU when idle.
+ *
+ * @author mgabriel.
+ */
+class YieldingWaiter implements WaitStrategy.Waiter {
+
+    @Override
+    public void idle() {
+        Thread.yield();
+    }
+
+    @Override
+    public void reset() {
+        //no state
+    }
+
+    @Override
+    public void signal() {
+        //the reader never sleeps
+    }
+}
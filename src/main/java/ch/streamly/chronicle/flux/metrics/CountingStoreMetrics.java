@@ -0,0 +1,51 @@
+package ch.streamly.chronicle.flux.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import ch.streamly.chronicle.flux.metrics.StoreStats.StoreStatsBuilder;
+
+/**
+ * Store metrics based on striped counters and lock-free histograms, which do not contend between
+ * the appending and reading threads. An instance can be shared by several stores to aggregate their metrics.
+ *
+ * @author mgabriel.
+ */
+public final class CountingStoreMetrics implements StoreMetrics {
+    private final LongAdder appends = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder deletedCycles = new LongAdder();
+    private final LogHistogram serializeNanos = new LogHistogram();
+    private final LogHistogram deserializeNanos = new LogHistogram();
+
+    CountingStoreMetrics() {
+    }
+
+    @Override
+    public void onAppend(long bytes, long serializeNanos) {
+        appends.increment();
+        bytesWritten.add(bytes);
+        this.serializeNanos.record(serializeNanos);
+    }
+
+    @Override
+    public void onRead(long deserializeNanos) {
+        reads.increment();
+        this.deserializeNanos.record(deserializeNanos);
+    }
+
+    @Override
+    public void onCyclesDeleted(int cycles) {
+        deletedCycles.add(cycles);
+    }
+
+    @Override
+    public void snapshot(StoreStatsBuilder stats) {
+        stats.appends(appends.sum())
+                .bytesWritten(bytesWritten.sum())
+                .reads(reads.sum())
+                .deletedCycles(deletedCycles.sum())
+                .serializeNanos(serializeNanos.snapshot())
+                .deserializeNanos(deserializeNanos.snapshot());
+    }
+}
@@ -0,0 +1,168 @@
+package ch.streamly.chronicle.flux.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of positive values (e.g. durations in nanoseconds) with logarithmic buckets.
+ * Each power of two is split in {@value #SUB_BUCKETS} buckets, so that the relative error of a percentile
+ * is at most 12.5%. Recording a value is a few arithmetic operations and an atomic increment, without allocation.
+ *
+ * @author mgabriel.
+ */
+public final class LogHistogram {
+    static final int SUB_BUCKETS = 8;
+    private static final int SUB_BITS = 3;
+    private static final int BUCKET_COUNT = (64 - SUB_BITS) * SUB_BUCKETS;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder negativeCount = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param value value to record, negative values are recorded as 0 and counted in {@link #negativeCount()}.
+     */
+    public void record(long value) {
+        if (value < 0) {
+            negativeCount.increment();
+        }
+        long v = Math.max(value, 0);
+        buckets.incrementAndGet(bucket(v));
+        count.increment();
+        sum.add(v);
+        max.accumulate(v);
+    }
+
+    /**
+     * @return a copy of the values recorded so far. The values recorded while the snapshot is taken may be partially included.
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = buckets.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(copy, total, sum.sum(), max.get());
+    }
+
+    /**
+     * Removes all the values recorded.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        negativeCount.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    /**
+     * @return the number of values recorded.
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * @return the number of negative values recorded (e.g. latencies measured with the clocks of two processes),
+     * they are included in the histogram as 0.
+     */
+    public long negativeCount() {
+        return negativeCount.sum();
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+
+    /**
+     * Immutable copy of a histogram.
+     */
+    public static final class Snapshot {
+        /**
+         * A snapshot without any value.
+         */
+        public static final Snapshot EMPTY = new Snapshot(new long[BUCKET_COUNT], 0, 0, 0);
+        private final long[] buckets;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] buckets, long count, long sum, long max) {
+            this.buckets = buckets;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * @return the number of values.
+         */
+        public long count() {
+            return count;
+        }
+
+        /**
+         * @return the mean of the values, 0 if there is no value.
+         */
+        public double mean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @return the highest value.
+         */
+        public long max() {
+            return max;
+        }
+
+        /**
+         * @param percentile percentile between 0 and 100 (e.g. 99.9).
+         * @return an upper bound of the value at the given percentile, 0 if there is no value.
+         */
+        public long percentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(count * Math.min(percentile, 100) / 100));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return Math.min(highestValue(i), max);
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return "{" +
+                    "count=" + count +
+                    ", mean=" + mean() +
+                    ", p50=" + percentile(50) +
+                    ", p99=" + percentile(99) +
+                    ", p99.9=" + percentile(99.9) +
+                    ", max=" + max +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package ch.streamly.chronicle.flux.metrics;
+
+import ch.streamly.chronicle.flux.metrics.StoreStats.StoreStatsBuilder;
+
+/**
+ * Instrumentation of the append and read paths of a store. The methods are called on the hot paths of the store,
+ * from the appending and reading threads, the implementations must therefore be thread safe and cheap
+ * (e.g. {@link java.util.concurrent.atomic.LongAdder} counters and {@link LogHistogram}s).
+ * <p>
+ * The store does not measure anything when the metrics are {@link #NONE} (the default).
+ *
+ * @author mgabriel.
+ */
+public interface StoreMetrics {
+
+    /**
+     * Metrics that do not record anything.
+     */
+    StoreMetrics NONE = new StoreMetrics() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    };
+
+    /**
+     * @return metrics counting the events of a store with striped counters and lock-free histograms.
+     */
+    static CountingStoreMetrics counting() {
+        return new CountingStoreMetrics();
+    }
+
+    /**
+     * @return false if the store can skip the measures (e.g. reading the clock).
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Called when a value has been serialized.
+     *
+     * @param bytes          size of the serialized value.
+     * @param serializeNanos time spent serializing the value.
+     */
+    default void onAppend(long bytes, long serializeNanos) {
+    }
+
+    /**
+     * Called when a value has been deserialized.
+     *
+     * @param deserializeNanos time spent deserializing the value.
+     */
+    default void onRead(long deserializeNanos) {
+    }
+
+    /**
+     * Called when cycle files have been deleted.
+     *
+     * @param cycles number of cycle files deleted.
+     */
+    default void onCyclesDeleted(int cycles) {
+    }
+
+    /**
+     * Adds the values of these metrics to a snapshot of the store statistics.
+     *
+     * @param stats snapshot being built.
+     */
+    default void snapshot(StoreStatsBuilder stats) {
+    }
+}
@@ -0,0 +1,169 @@
+package ch.streamly.chronicle.flux.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Snapshot of the statistics of a store. The counters and histograms are only filled if the store is built
+ * with {@link StoreMetrics} recording them (e.g. {@link StoreMetrics#counting()}),
+ * the statistics of the subscribers are always available.
+ *
+ * @author mgabriel.
+ */
+public final class StoreStats {
+    private final long endIndex;
+    private final long appends;
+    private final long bytesWritten;
+    private final long reads;
+    private final long deletedCycles;
+    private final LogHistogram.Snapshot serializeNanos;
+    private final LogHistogram.Snapshot deserializeNanos;
+    private final List<SubscriberStats> subscribers;
+
+    private StoreStats(StoreStatsBuilder builder) {
+        endIndex = builder.endIndex;
+        appends = builder.appends;
+        bytesWritten = builder.bytesWritten;
+        reads = builder.reads;
+        deletedCycles = builder.deletedCycles;
+        serializeNanos = builder.serializeNanos;
+        deserializeNanos = builder.deserializeNanos;
+        subscribers = Collections.unmodifiableList(new ArrayList<>(builder.subscribers));
+    }
+
+    /**
+     * @return a builder for a snapshot.
+     */
+    public static StoreStatsBuilder newBuilder() {
+        return new StoreStatsBuilder();
+    }
+
+    /**
+     * @return index at the end of the store, where the next excerpt will be appended.
+     */
+    public long endIndex() {
+        return endIndex;
+    }
+
+    /**
+     * @return number of values appended.
+     */
+    public long appends() {
+        return appends;
+    }
+
+    /**
+     * @return number of bytes of the serialized values appended.
+     */
+    public long bytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * @return number of values read by all the subscribers.
+     */
+    public long reads() {
+        return reads;
+    }
+
+    /**
+     * @return number of cycle files deleted.
+     */
+    public long deletedCycles() {
+        return deletedCycles;
+    }
+
+    /**
+     * @return time spent serializing each value, in nanoseconds.
+     */
+    public LogHistogram.Snapshot serializeNanos() {
+        return serializeNanos;
+    }
+
+    /**
+     * @return time spent deserializing each value, in nanoseconds.
+     */
+    public LogHistogram.Snapshot deserializeNanos() {
+        return deserializeNanos;
+    }
+
+    /**
+     * @return statistics of the active subscribers.
+     */
+    public List<SubscriberStats> subscribers() {
+        return subscribers;
+    }
+
+    @Override
+    public String toString() {
+        return "StoreStats{" +
+                "endIndex=" + endIndex +
+                ", appends=" + appends +
+                ", bytesWritten=" + bytesWritten +
+                ", reads=" + reads +
+                ", deletedCycles=" + deletedCycles +
+                ", serializeNanos=" + serializeNanos +
+                ", deserializeNanos=" + deserializeNanos +
+                ", subscribers=" + subscribers +
+                '}';
+    }
+
+    public static final class StoreStatsBuilder {
+        private final List<SubscriberStats> subscribers = new ArrayList<>();
+        private long endIndex = -1;
+        private long appends;
+        private long bytesWritten;
+        private long reads;
+        private long deletedCycles;
+        private LogHistogram.Snapshot serializeNanos = LogHistogram.Snapshot.EMPTY;
+        private LogHistogram.Snapshot deserializeNanos = LogHistogram.Snapshot.EMPTY;
+
+        private StoreStatsBuilder() {
+        }
+
+        public StoreStatsBuilder endIndex(long endIndex) {
+            this.endIndex = endIndex;
+            return this;
+        }
+
+        public StoreStatsBuilder appends(long appends) {
+            this.appends = appends;
+            return this;
+        }
+
+        public StoreStatsBuilder bytesWritten(long bytesWritten) {
+            this.bytesWritten = bytesWritten;
+            return this;
+        }
+
+        public StoreStatsBuilder reads(long reads) {
+            this.reads = reads;
+            return this;
+        }
+
+        public StoreStatsBuilder deletedCycles(long deletedCycles) {
+            this.deletedCycles = deletedCycles;
+            return this;
+        }
+
+        public StoreStatsBuilder serializeNanos(LogHistogram.Snapshot serializeNanos) {
+            this.serializeNanos = serializeNanos;
+            return this;
+        }
+
+        public StoreStatsBuilder deserializeNanos(LogHistogram.Snapshot deserializeNanos) {
+            this.deserializeNanos = deserializeNanos;
+            return this;
+        }
+
+        public StoreStatsBuilder subscriber(SubscriberStats subscriber) {
+            subscribers.add(subscriber);
+            return this;
+        }
+
+        public StoreStats build() {
+            return new StoreStats(this);
+        }
+    }
+}
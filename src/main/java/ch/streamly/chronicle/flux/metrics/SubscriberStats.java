@@ -0,0 +1,52 @@
+package ch.streamly.chronicle.flux.metrics;
+
+/**
+ * Statistics of a subscriber of a store.
+ *
+ * @author mgabriel.
+ */
+public final class SubscriberStats {
+    private final String name;
+    private final long index;
+    private final long lag;
+    private final long emitted;
+
+    /**
+     * @param name    kind of subscription, or name of the durable consumer.
+     * @param index   index of the next excerpt read by the subscriber.
+     * @param lag     number of excerpts between the subscriber and the last excerpt appended, -1 if unknown.
+     * @param emitted number of values emitted to the subscriber.
+     */
+    public SubscriberStats(String name, long index, long lag, long emitted) {
+        this.name = name;
+        this.index = index;
+        this.lag = lag;
+        this.emitted = emitted;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public long index() {
+        return index;
+    }
+
+    public long lag() {
+        return lag;
+    }
+
+    public long emitted() {
+        return emitted;
+    }
+
+    @Override
+    public String toString() {
+        return "SubscriberStats{" +
+                "name='" + name + '\'' +
+                ", index=" + index +
+                ", lag=" + lag +
+                ", emitted=" + emitted +
+                '}';
+    }
+}
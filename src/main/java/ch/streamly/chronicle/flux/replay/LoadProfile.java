@@ -0,0 +1,182 @@
+package ch.streamly.chronicle.flux.replay;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The rate of a replay over time, in events per second, used for load tests.
+ * A profile is a sequence of segments, each one holding a rate or ramping linearly from one rate to another.
+ * After the last segment, the replay goes on at the last rate of the profile.
+ *
+ * @author mgabriel.
+ */
+public final class LoadProfile {
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+    private final long[] startNanos;
+    private final double[] startCounts;
+    // rates in events per nanosecond
+    private final double[] fromRates;
+    private final double[] slopes;
+
+    private LoadProfile(List<Segment> segments) {
+        int count = segments.size();
+        startNanos = new long[count];
+        startCounts = new double[count];
+        fromRates = new double[count];
+        slopes = new double[count];
+        long start = 0;
+        double startCount = 0;
+        for (int i = 0; i < count; i++) {
+            Segment segment = segments.get(i);
+            double from = segment.fromRate / NANOS_PER_SECOND;
+            double to = segment.toRate / NANOS_PER_SECOND;
+            startNanos[i] = start;
+            startCounts[i] = startCount;
+            fromRates[i] = from;
+            slopes[i] = segment.durationNanos == 0 ? 0 : (to - from) / segment.durationNanos;
+            start += segment.durationNanos;
+            startCount += (from + to) / 2 * segment.durationNanos;
+        }
+    }
+
+    /**
+     * @param eventsPerSecond rate of the replay.
+     * @return a profile replaying at a fixed rate.
+     */
+    public static LoadProfile constant(double eventsPerSecond) {
+        return newBuilder().hold(eventsPerSecond, Duration.ZERO).build();
+    }
+
+    /**
+     * @return a builder for a load profile.
+     */
+    public static LoadProfileBuilder newBuilder() {
+        return new LoadProfileBuilder();
+    }
+
+    /**
+     * @param elapsedNanos time elapsed since the start of the replay.
+     * @return the number of values that may have been emitted after the given time.
+     */
+    long count(long elapsedNanos) {
+        int i = segmentAtTime(elapsedNanos);
+        double t = elapsedNanos - startNanos[i];
+        return (long) (startCounts[i] + fromRates[i] * t + slopes[i] * t * t / 2) + 1;
+    }
+
+    /**
+     * @param index index of a value (starting at 0).
+     * @return the time elapsed since the start of the replay when the value is due,
+     * or {@link Long#MAX_VALUE} if the value is never due.
+     */
+    long dueNanos(long index) {
+        int i = segmentAtCount(index);
+        double remaining = index - startCounts[i];
+        double from = fromRates[i];
+        double slope = slopes[i];
+        double t;
+        if (slope == 0) {
+            if (from == 0) {
+                return Long.MAX_VALUE;
+            }
+            t = remaining / from;
+        } else {
+            // solves from * t + slope * t^2 / 2 = remaining
+            t = (Math.sqrt(from * from + 2 * slope * remaining) - from) / slope;
+        }
+        double due = Math.ceil(startNanos[i] + t);
+        return due >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) due;
+    }
+
+    private int segmentAtTime(long elapsedNanos) {
+        int i = startNanos.length - 1;
+        while (i > 0 && startNanos[i] > elapsedNanos) {
+            i--;
+        }
+        return i;
+    }
+
+    private int segmentAtCount(long index) {
+        int i = startCounts.length - 1;
+        while (i > 0 && startCounts[i] > index) {
+            i--;
+        }
+        return i;
+    }
+
+    private static final class Segment {
+        private final double fromRate;
+        private final double toRate;
+        private final long durationNanos;
+
+        private Segment(double fromRate, double toRate, long durationNanos) {
+            this.fromRate = fromRate;
+            this.toRate = toRate;
+            this.durationNanos = durationNanos;
+        }
+    }
+
+    public static final class LoadProfileBuilder {
+        private final List<Segment> segments = new ArrayList<>();
+
+        private LoadProfileBuilder() {
+        }
+
+        /**
+         * @param eventsPerSecond rate of the segment.
+         * @param duration        duration of the segment.
+         * @return this builder
+         */
+        public LoadProfileBuilder hold(double eventsPerSecond, Duration duration) {
+            return ramp(eventsPerSecond, eventsPerSecond, duration);
+        }
+
+        /**
+         * @param fromEventsPerSecond rate at the start of the segment.
+         * @param toEventsPerSecond   rate at the end of the segment.
+         * @param duration            duration of the segment.
+         * @return this builder
+         */
+        public LoadProfileBuilder ramp(double fromEventsPerSecond, double toEventsPerSecond, Duration duration) {
+            if (fromEventsPerSecond < 0 || toEventsPerSecond < 0) {
+                throw new IllegalArgumentException("the rates must not be negative, got "
+                        + fromEventsPerSecond + " and " + toEventsPerSecond);
+            }
+            if (duration.isNegative()) {
+                throw new IllegalArgumentException("the duration must not be negative, got " + duration);
+            }
+            segments.add(new Segment(fromEventsPerSecond, toEventsPerSecond, duration.toNanos()));
+            return this;
+        }
+
+        /**
+         * Adds a segment for each step, the rate increasing by {@code increment} at each step.
+         *
+         * @param firstEventsPerSecond rate of the first step.
+         * @param increment            rate increment between two steps.
+         * @param steps                number of steps.
+         * @param stepDuration         duration of each step.
+         * @return this builder
+         */
+        public LoadProfileBuilder steps(double firstEventsPerSecond, double increment, int steps, Duration stepDuration) {
+            for (int i = 0; i < steps; i++) {
+                hold(firstEventsPerSecond + i * increment, stepDuration);
+            }
+            return this;
+        }
+
+        /**
+         * @return the load profile.
+         */
+        public LoadProfile build() {
+            if (segments.isEmpty()) {
+                throw new IllegalStateException("a load profile needs at least one segment");
+            }
+            List<Segment> all = new ArrayList<>(segments);
+            Segment last = segments.get(segments.size() - 1);
+            all.add(new Segment(last.toRate, last.toRate, 0));
+            return new LoadProfile(all);
+        }
+    }
+}
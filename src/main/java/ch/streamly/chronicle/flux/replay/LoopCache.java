@@ -0,0 +1,127 @@
+package ch.streamly.chronicle.flux.replay;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.streamly.chronicle.flux.ValueMarshaller;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+
+/**
+ * A bounded cache of the values of a replay, used to replay a history several times (e.g. in a loop)
+ * while reading it only once from its source.
+ * <p>
+ * The cache is filled by the first subscription to the replay. Once this subscription completes,
+ * the following subscriptions read the values from the cache. If the values exceed the size of the cache,
+ * the cache is dropped and the following subscriptions read the values from the source again.
+ * <p>
+ * Dispose the cache once the replay is over to free its memory, e.g. {@code inLoop().doFinally(signal -> cache.dispose())}.
+ * The subscriptions reading the cache when it is disposed complete normally, the following ones read the source.
+ *
+ * @param <T> data type
+ * @author mgabriel.
+ */
+public abstract class LoopCache<T> implements Disposable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoopCache.class);
+    private static final int EMPTY = 0;
+    private static final int FILLING = 1;
+    private static final int COMPLETE = 2;
+    private static final int OVERFLOW = 3;
+    private static final int DISPOSED = 4;
+    private final AtomicInteger state = new AtomicInteger(EMPTY);
+
+    /**
+     * @param maxValues maximum number of values kept in the cache.
+     * @param <T>       data type
+     * @return a cache keeping the deserialized values in the heap.
+     */
+    public static <T> LoopCache<T> onHeap(int maxValues) {
+        return new OnHeapLoopCache<>(maxValues);
+    }
+
+    /**
+     * @param maxBytes   maximum size of the cache in bytes.
+     * @param marshaller serializes the values in the cache, and deserializes them on each replay.
+     * @param <T>        data type
+     * @return a cache keeping the serialized values in native memory, out of the heap.
+     */
+    public static <T> LoopCache<T> offHeap(long maxBytes, ValueMarshaller<T> marshaller) {
+        return new OffHeapLoopCache<>(maxBytes, marshaller);
+    }
+
+    /**
+     * @param value value to add.
+     * @return false if the value does not fit in the cache.
+     */
+    abstract boolean add(T value);
+
+    /**
+     * @return the values of the cache, once it is complete.
+     */
+    abstract Flux<T> values();
+
+    /**
+     * Removes all the values and frees the memory used by the cache.
+     */
+    abstract void clear();
+
+    /**
+     * @return true if the cache holds all the values of the source.
+     */
+    public boolean isComplete() {
+        return state.get() == COMPLETE;
+    }
+
+    /**
+     * Frees the memory used by the cache. If the cache is being filled, it is freed once the filling subscription terminates.
+     */
+    @Override
+    public void dispose() {
+        if (state.getAndSet(DISPOSED) != FILLING) {
+            clear();
+        }
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return state.get() == DISPOSED;
+    }
+
+    /**
+     * @param source values to cache.
+     * @return the values of the source, read from the cache once it is complete.
+     */
+    Flux<T> cache(Flux<T> source) {
+        return Flux.defer(() -> {
+            if (state.get() == COMPLETE) {
+                return values();
+            }
+            if (state.compareAndSet(EMPTY, FILLING)) {
+                return fill(source);
+            }
+            return source;
+        });
+    }
+
+    private Flux<T> fill(Flux<T> source) {
+        return source
+                .doOnNext(this::addOrDrop)
+                .doOnComplete(() -> state.compareAndSet(FILLING, COMPLETE))
+                .doFinally(signal -> {
+                    if (signal != SignalType.ON_COMPLETE && state.compareAndSet(FILLING, EMPTY)
+                            || state.get() == DISPOSED) {
+                        clear();
+                    }
+                });
+    }
+
+    private void addOrDrop(T value) {
+        if (state.get() == FILLING && !add(value) && state.compareAndSet(FILLING, OVERFLOW)) {
+            LOGGER.warn("The values exceed the size of the loop cache, they will be read from their source");
+            clear();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package ch.streamly.chronicle.flux.replay;
+
+import ch.streamly.chronicle.flux.ValueMarshaller;
+import net.openhft.chronicle.bytes.Bytes;
+import reactor.core.publisher.Flux;
+
+/**
+ * Loop cache keeping the serialized values in native memory, each value being written as its length
+ * followed by its bytes. The values are deserialized again on each replay.
+ * The memory is released when the cache is cleared, once the replays still reading it are over.
+ *
+ * @param <T> data type
+ * @author mgabriel.
+ */
+final class OffHeapLoopCache<T> extends LoopCache<T> {
+    private static final long INITIAL_CAPACITY = 1 << 20;
+    private final long maxBytes;
+    private final ValueMarshaller<T> marshaller;
+    private Bytes<?> bytes;
+
+    OffHeapLoopCache(long maxBytes, ValueMarshaller<T> marshaller) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("the cache size must be positive, got " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        this.marshaller = marshaller;
+    }
+
+    @Override
+    synchronized boolean add(T value) {
+        if (bytes == null) {
+            bytes = Bytes.allocateElasticDirect(Math.min(maxBytes, INITIAL_CAPACITY));
+        }
+        long lengthPosition = bytes.writePosition();
+        bytes.writeInt(0);
+        marshaller.write(bytes, value);
+        long end = bytes.writePosition();
+        if (end > maxBytes) {
+            bytes.writePosition(lengthPosition);
+            return false;
+        }
+        bytes.writeInt(lengthPosition, (int) (end - lengthPosition - Integer.BYTES));
+        return true;
+    }
+
+    @Override
+    synchronized Flux<T> values() {
+        if (bytes == null) {
+            return Flux.empty();
+        }
+        Bytes<?> view = readView();
+        return Flux.<T, Bytes<?>>using(() -> view,
+                v -> Flux.generate(sink -> {
+                    if (v.readRemaining() <= 0) {
+                        sink.complete();
+                    } else {
+                        sink.next(read(v));
+                    }
+                }),
+                Bytes::release);
+    }
+
+    /**
+     * The view reserves the memory of the cache until it is released, so that the cache can be cleared while it is read.
+     */
+    private Bytes<?> readView() {
+        Bytes<?> view = bytes.bytesStore().bytesForRead();
+        view.readLimit(bytes.writePosition());
+        return view;
+    }
+
+    //package private for testing
+    synchronized Bytes<?> bytes() {
+        return bytes;
+    }
+
+    private T read(Bytes<?> view) {
+        int length = view.readInt();
+        long limit = view.readLimit();
+        long end = view.readPosition() + length;
+        view.readLimit(end);
+        try {
+            return marshaller.read(view);
+        } finally {
+            view.readLimit(limit);
+            view.readPosition(end);
+        }
+    }
+
+    @Override
+    synchronized void clear() {
+        if (bytes != null) {
+            bytes.release();
+            bytes = null;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package ch.streamly.chronicle.flux.replay;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * Loop cache keeping the deserialized values in the heap.
+ *
+ * @param <T> data type
+ * @author mgabriel.
+ */
+final class OnHeapLoopCache<T> extends LoopCache<T> {
+    private final int maxValues;
+    private List<T> values = new ArrayList<>();
+
+    OnHeapLoopCache(int maxValues) {
+        if (maxValues < 1) {
+            throw new IllegalArgumentException("the cache must hold at least one value, got " + maxValues);
+        }
+        this.maxValues = maxValues;
+    }
+
+    @Override
+    synchronized boolean add(T value) {
+        if (values.size() >= maxValues) {
+            return false;
+        }
+        values.add(value);
+        return true;
+    }
+
+    @Override
+    synchronized Flux<T> values() {
+        return Flux.fromIterable(values);
+    }
+
+    /**
+     * The list is replaced rather than emptied, so that the replays still reading it are not affected.
+     */
+    @Override
+    synchronized void clear() {
+        values = new ArrayList<>();
+    }
+}
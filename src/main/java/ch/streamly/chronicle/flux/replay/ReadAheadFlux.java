@@ -0,0 +1,211 @@
+package ch.streamly.chronicle.flux.replay;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.ToLongFunction;
+
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxOperator;
+import reactor.core.publisher.Operators;
+import reactor.util.annotation.NonNull;
+import reactor.util.concurrent.Queues;
+
+/**
+ * Reads the values of its source ahead of the downstream demand, into a buffer bounded by a number of values
+ * and by a time horizon (the time elapsed between the next value to emit and the last value read).
+ * The source keeps reading on its own thread while the buffer is not full, so that a slow read (e.g. a page fault
+ * on a cold file) is absorbed by the buffer instead of delaying the emissions.
+ *
+ * @param <T> data type
+ * @author mgabriel.
+ */
+final class ReadAheadFlux<T> extends FluxOperator<T, T> {
+    private static final int BATCH = 64;
+    private final ToLongFunction<T> timestampExtractor;
+    private final long horizonNanos;
+    private final TimeUnit timeUnit;
+    private final int maxValues;
+
+    /**
+     * @param source             values to read ahead.
+     * @param timestampExtractor extracts the timestamp from the values.
+     * @param timeUnit           unit of the timestamps.
+     * @param horizonNanos       maximum time span of the buffered values, in nanoseconds.
+     * @param maxValues          maximum number of buffered values.
+     */
+    ReadAheadFlux(Flux<T> source, ToLongFunction<T> timestampExtractor, TimeUnit timeUnit, long horizonNanos,
+            int maxValues) {
+        super(source);
+        if (maxValues < 1) {
+            throw new IllegalArgumentException("the read-ahead buffer must hold at least one value, got " + maxValues);
+        }
+        this.timestampExtractor = timestampExtractor;
+        this.timeUnit = timeUnit;
+        this.horizonNanos = horizonNanos;
+        this.maxValues = maxValues;
+    }
+
+    @Override
+    public void subscribe(@NonNull CoreSubscriber<? super T> actual) {
+        source.subscribe(new ReadAheadSubscriber<>(actual, this));
+    }
+
+    private static final class ReadAheadSubscriber<T> implements CoreSubscriber<T>, Subscription {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicLongFieldUpdater<ReadAheadSubscriber> REQUESTED =
+                AtomicLongFieldUpdater.newUpdater(ReadAheadSubscriber.class, "requested");
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<ReadAheadSubscriber> WIP =
+                AtomicIntegerFieldUpdater.newUpdater(ReadAheadSubscriber.class, "wip");
+        private final CoreSubscriber<? super T> actual;
+        private final ToLongFunction<T> timestampExtractor;
+        private final TimeUnit timeUnit;
+        private final long horizonNanos;
+        private final int maxValues;
+        private final Queue<T> queue = Queues.<T>unbounded(BATCH).get();
+        private Subscription upstream;
+        private volatile long requested;
+        private volatile int wip;
+        private volatile boolean done;
+        private volatile boolean cancelled;
+        private volatile long received;
+        private volatile long lastTimestamp;
+        private Throwable error;
+        private long upstreamRequested;
+        private long emittedTotal;
+
+        private ReadAheadSubscriber(CoreSubscriber<? super T> actual, ReadAheadFlux<T> parent) {
+            this.actual = actual;
+            this.timestampExtractor = parent.timestampExtractor;
+            this.timeUnit = parent.timeUnit;
+            this.horizonNanos = parent.horizonNanos;
+            this.maxValues = parent.maxValues;
+        }
+
+        @Override
+        public void onSubscribe(@NonNull Subscription s) {
+            if (Operators.validate(upstream, s)) {
+                upstream = s;
+                actual.onSubscribe(this);
+                drain();
+            }
+        }
+
+        @Override
+        public void onNext(T value) {
+            lastTimestamp = timestampExtractor.applyAsLong(value);
+            queue.offer(value);
+            received++; // single producer
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (Operators.validate(n)) {
+                Operators.addCap(REQUESTED, this, n);
+                drain();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            upstream.cancel();
+            if (WIP.getAndIncrement(this) == 0) {
+                queue.clear();
+            }
+        }
+
+        private void drain() {
+            if (WIP.getAndIncrement(this) != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                long r = requested;
+                long emitted = 0;
+                while (emitted != r) {
+                    if (cancelled) {
+                        queue.clear();
+                        return;
+                    }
+                    boolean terminated = done;
+                    T value = queue.poll();
+                    if (value == null) {
+                        if (terminated) {
+                            terminate();
+                            return;
+                        }
+                        break;
+                    }
+                    actual.onNext(value);
+                    emitted++;
+                }
+                if (cancelled) {
+                    queue.clear();
+                    return;
+                }
+                if (done && queue.isEmpty()) {
+                    terminate();
+                    return;
+                }
+                emittedTotal += emitted;
+                if (emitted != 0 && r != Long.MAX_VALUE) {
+                    Operators.produced(REQUESTED, this, emitted);
+                }
+                readAhead();
+                missed = WIP.addAndGet(this, -missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Requests more values from the source while the buffer is not full.
+         */
+        private void readAhead() {
+            long buffered = received - emittedTotal;
+            long outstanding = upstreamRequested - received;
+            long capacity = maxValues - buffered - outstanding;
+            if (done || capacity <= 0 || outstanding > BATCH >> 1 || beyondHorizon(buffered)) {
+                return;
+            }
+            long n = Math.min(BATCH, capacity);
+            upstreamRequested += n;
+            upstream.request(n);
+        }
+
+        private boolean beyondHorizon(long buffered) {
+            if (buffered == 0 || horizonNanos == Long.MAX_VALUE) {
+                return false;
+            }
+            T next = queue.peek();
+            return next != null
+                    && timeUnit.toNanos(lastTimestamp - timestampExtractor.applyAsLong(next)) >= horizonNanos;
+        }
+
+        private void terminate() {
+            cancelled = true;
+            if (error != null) {
+                actual.onError(error);
+            } else {
+                actual.onComplete();
+            }
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package ch.streamly.chronicle.flux.replay;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxOperator;
+import reactor.core.publisher.Operators;
+import reactor.util.annotation.NonNull;
+import reactor.util.concurrent.Queues;
+
+/**
+ * Sorts slightly out-of-order values by timestamp, with a bounded reorder window.
+ * <p>
+ * The values are kept in a binary heap of their timestamps until they are older than the latest timestamp
+ * by the maximum lateness, or until the heap holds the maximum number of values. A value arriving after a more recent
+ * value has already been emitted is beyond the window: it is dropped and passed to the late value handler.
+ * Values with the same timestamp keep their original order.
+ *
+ * @param <T> data type
+ * @author mgabriel.
+ */
+final class ReorderFlux<T> extends FluxOperator<T, T> {
+    private final ToLongFunction<T> timestampExtractor;
+    private final TimeUnit timeUnit;
+    private final long maxLatenessNanos;
+    private final int maxValues;
+    private final Consumer<? super T> lateValueHandler;
+
+    /**
+     * @param source             values to sort.
+     * @param timestampExtractor extracts the timestamp from the values.
+     * @param timeUnit           unit of the timestamps.
+     * @param maxLatenessNanos   maximum lateness of a value, in nanoseconds.
+     * @param maxValues          maximum number of values held in the reorder window.
+     * @param lateValueHandler   receives the values arriving beyond the window.
+     */
+    ReorderFlux(Flux<T> source, ToLongFunction<T> timestampExtractor, TimeUnit timeUnit, long maxLatenessNanos,
+            int maxValues, Consumer<? super T> lateValueHandler) {
+        super(source);
+        if (maxValues < 1) {
+            throw new IllegalArgumentException("the reorder window must hold at least one value, got " + maxValues);
+        }
+        if (maxLatenessNanos < 0) {
+            throw new IllegalArgumentException("the maximum lateness must not be negative, got " + maxLatenessNanos);
+        }
+        this.timestampExtractor = timestampExtractor;
+        this.timeUnit = timeUnit;
+        this.maxLatenessNanos = maxLatenessNanos;
+        this.maxValues = maxValues;
+        this.lateValueHandler = lateValueHandler;
+    }
+
+    @Override
+    public void subscribe(@NonNull CoreSubscriber<? super T> actual) {
+        source.subscribe(new ReorderSubscriber<>(actual, this));
+    }
+
+    private static final class ReorderSubscriber<T> implements CoreSubscriber<T>, Subscription {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicLongFieldUpdater<ReorderSubscriber> REQUESTED =
+                AtomicLongFieldUpdater.newUpdater(ReorderSubscriber.class, "requested");
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<ReorderSubscriber> WIP =
+                AtomicIntegerFieldUpdater.newUpdater(ReorderSubscriber.class, "wip");
+        private static final int PREFETCH = Queues.SMALL_BUFFER_SIZE;
+        private static final int LIMIT = PREFETCH - (PREFETCH >> 2);
+        private static final int INITIAL_CAPACITY = 64;
+        private final CoreSubscriber<? super T> actual;
+        private final ToLongFunction<T> timestampExtractor;
+        private final TimeUnit timeUnit;
+        private final long maxLatenessNanos;
+        private final int maxValues;
+        private final Consumer<? super T> lateValueHandler;
+        private final Queue<T> queue = Queues.<T>get(PREFETCH).get();
+        // binary heap of the values, ordered by timestamp then by arrival
+        private long[] heapTimes;
+        private long[] heapSequences;
+        private Object[] heapValues;
+        private int heapSize;
+        private long sequence;
+        private long latestTimestamp = Long.MIN_VALUE;
+        private long lastEmittedTimestamp = Long.MIN_VALUE;
+        private Subscription upstream;
+        private volatile long requested;
+        private volatile int wip;
+        private volatile boolean done;
+        private volatile boolean cancelled;
+        private Throwable error;
+        private int consumed;
+
+        private ReorderSubscriber(CoreSubscriber<? super T> actual, ReorderFlux<T> parent) {
+            this.actual = actual;
+            this.timestampExtractor = parent.timestampExtractor;
+            this.timeUnit = parent.timeUnit;
+            this.maxLatenessNanos = parent.maxLatenessNanos;
+            this.maxValues = parent.maxValues;
+            this.lateValueHandler = parent.lateValueHandler;
+            int capacity = Math.min(maxValues, INITIAL_CAPACITY);
+            heapTimes = new long[capacity];
+            heapSequences = new long[capacity];
+            heapValues = new Object[capacity];
+        }
+
+        @Override
+        public void onSubscribe(@NonNull Subscription s) {
+            if (Operators.validate(upstream, s)) {
+                upstream = s;
+                actual.onSubscribe(this);
+                s.request(PREFETCH);
+            }
+        }
+
+        @Override
+        public void onNext(T value) {
+            if (!queue.offer(value)) {
+                upstream.cancel();
+                onError(Exceptions.failWithOverflow("Queue is full: Reactive Streams source doesn't respect backpressure"));
+                return;
+            }
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (Operators.validate(n)) {
+                Operators.addCap(REQUESTED, this, n);
+                drain();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            upstream.cancel();
+            if (WIP.getAndIncrement(this) == 0) {
+                clear();
+            }
+        }
+
+        private void clear() {
+            queue.clear();
+            Arrays.fill(heapValues, 0, heapSize, null);
+            heapSize = 0;
+        }
+
+        private void drain() {
+            if (WIP.getAndIncrement(this) != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                long r = requested;
+                long emitted = 0;
+                while (true) {
+                    if (cancelled) {
+                        clear();
+                        return;
+                    }
+                    boolean terminated = done;
+                    fillHeap();
+                    terminated = terminated && queue.isEmpty();
+                    if (heapSize == 0) {
+                        if (terminated) {
+                            terminate();
+                            return;
+                        }
+                        break;
+                    }
+                    if (emitted == r || !(terminated || heapSize == maxValues || isOutOfWindow(heapTimes[0]))) {
+                        break;
+                    }
+                    lastEmittedTimestamp = heapTimes[0];
+                    actual.onNext(removeTop());
+                    emitted++;
+                }
+                if (emitted != 0 && r != Long.MAX_VALUE) {
+                    Operators.produced(REQUESTED, this, emitted);
+                }
+                missed = WIP.addAndGet(this, -missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Moves the values received to the heap, as long as it is not full.
+         */
+        private void fillHeap() {
+            while (heapSize < maxValues) {
+                T value = queue.poll();
+                if (value == null) {
+                    return;
+                }
+                if (++consumed == LIMIT) {
+                    consumed = 0;
+                    upstream.request(LIMIT);
+                }
+                long timestamp = timestampExtractor.applyAsLong(value);
+                if (timestamp < lastEmittedTimestamp) {
+                    lateValueHandler.accept(value);
+                    continue;
+                }
+                if (timestamp > latestTimestamp) {
+                    latestTimestamp = timestamp;
+                }
+                insert(timestamp, value);
+            }
+        }
+
+        private boolean isOutOfWindow(long timestamp) {
+            return timeUnit.toNanos(latestTimestamp - timestamp) >= maxLatenessNanos;
+        }
+
+        private void insert(long time, T value) {
+            if (heapSize == heapTimes.length) {
+                int capacity = (int) Math.min(maxValues, heapSize * 2L);
+                heapTimes = Arrays.copyOf(heapTimes, capacity);
+                heapSequences = Arrays.copyOf(heapSequences, capacity);
+                heapValues = Arrays.copyOf(heapValues, capacity);
+            }
+            long seq = sequence++;
+            int position = heapSize++;
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                if (!before(time, seq, heapTimes[parent], heapSequences[parent])) {
+                    break;
+                }
+                move(parent, position);
+                position = parent;
+            }
+            heapTimes[position] = time;
+            heapSequences[position] = seq;
+            heapValues[position] = value;
+        }
+
+        @SuppressWarnings("unchecked")
+        private T removeTop() {
+            T top = (T) heapValues[0];
+            int last = --heapSize;
+            long lastTime = heapTimes[last];
+            long lastSeq = heapSequences[last];
+            Object lastValue = heapValues[last];
+            heapValues[last] = null;
+            int position = 0;
+            int half = heapSize >>> 1;
+            while (position < half) {
+                int child = 2 * position + 1;
+                int right = child + 1;
+                if (right < heapSize && before(heapTimes[right], heapSequences[right], heapTimes[child], heapSequences[child])) {
+                    child = right;
+                }
+                if (!before(heapTimes[child], heapSequences[child], lastTime, lastSeq)) {
+                    break;
+                }
+                move(child, position);
+                position = child;
+            }
+            if (heapSize > 0) {
+                heapTimes[position] = lastTime;
+                heapSequences[position] = lastSeq;
+                heapValues[position] = lastValue;
+            }
+            return top;
+        }
+
+        private void move(int from, int to) {
+            heapTimes[to] = heapTimes[from];
+            heapSequences[to] = heapSequences[from];
+            heapValues[to] = heapValues[from];
+        }
+
+        private static boolean before(long time, long seq, long otherTime, long otherSeq) {
+            return time < otherTime || (time == otherTime && seq < otherSeq);
+        }
+
+        private void terminate() {
+            cancelled = true;
+            if (error != null) {
+                actual.onError(error);
+            } else {
+                actual.onComplete();
+            }
+        }
+    }
+}
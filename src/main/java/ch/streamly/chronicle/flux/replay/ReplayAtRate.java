@@ -0,0 +1,261 @@
+package ch.streamly.chronicle.flux.replay;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxOperator;
+import reactor.core.publisher.Operators;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.annotation.NonNull;
+import reactor.util.concurrent.Queues;
+
+/**
+ * Replays the values at the rate of a load profile, ignoring their timestamps.
+ * <p>
+ * The number of values due is computed from the time elapsed since the start of the replay, so that the scheduling
+ * delays do not accumulate. The values are emitted in batches, at most once per tick, instead of scheduling a timer
+ * per value, which keeps the rate accurate at high rates.
+ *
+ * @param <T> data type
+ * @author mgabriel.
+ */
+final class ReplayAtRate<T> extends FluxOperator<T, T> {
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private final LoadProfile profile;
+    private final ReplayThroughput throughput;
+    private final Scheduler scheduler;
+
+    /**
+     * @param source     values to replay.
+     * @param profile    rate of the replay over time.
+     * @param throughput measures the throughput of the replay.
+     */
+    ReplayAtRate(Flux<T> source, LoadProfile profile, ReplayThroughput throughput) {
+        super(source);
+        this.profile = profile;
+        this.throughput = throughput;
+        this.scheduler = Schedulers.parallel();
+    }
+
+    @Override
+    public void subscribe(@NonNull CoreSubscriber<? super T> actual) {
+        source.subscribe(new RateSubscriber<>(actual, this));
+    }
+
+    private static final class RateSubscriber<T> implements CoreSubscriber<T>, Subscription, Runnable {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicLongFieldUpdater<RateSubscriber> REQUESTED =
+                AtomicLongFieldUpdater.newUpdater(RateSubscriber.class, "requested");
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<RateSubscriber> WIP =
+                AtomicIntegerFieldUpdater.newUpdater(RateSubscriber.class, "wip");
+        private static final int PREFETCH = Queues.SMALL_BUFFER_SIZE;
+        private static final int LIMIT = PREFETCH - (PREFETCH >> 2);
+        private final CoreSubscriber<? super T> actual;
+        private final LoadProfile profile;
+        private final ReplayThroughput throughput;
+        private final Scheduler scheduler;
+        private final Scheduler.Worker worker;
+        private final Queue<T> queue = Queues.<T>get(PREFETCH).get();
+        private Subscription upstream;
+        private volatile long requested;
+        private volatile int wip;
+        private volatile boolean done;
+        private volatile boolean cancelled;
+        private volatile boolean timerPending;
+        private Throwable error;
+        private int consumed;
+        private boolean started;
+        private long startNanos;
+        private long emittedTotal;
+        private long allowedTotal;
+
+        private RateSubscriber(CoreSubscriber<? super T> actual, ReplayAtRate<T> parent) {
+            this.actual = actual;
+            this.profile = parent.profile;
+            this.throughput = parent.throughput;
+            this.scheduler = parent.scheduler;
+            this.worker = scheduler.createWorker();
+        }
+
+        @Override
+        public void onSubscribe(@NonNull Subscription s) {
+            if (Operators.validate(upstream, s)) {
+                upstream = s;
+                actual.onSubscribe(this);
+                s.request(PREFETCH);
+            }
+        }
+
+        @Override
+        public void onNext(T value) {
+            if (!queue.offer(value)) {
+                upstream.cancel();
+                onError(Exceptions.failWithOverflow("Queue is full: Reactive Streams source doesn't respect backpressure"));
+                return;
+            }
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (Operators.validate(n)) {
+                Operators.addCap(REQUESTED, this, n);
+                drain();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            upstream.cancel();
+            worker.dispose();
+            if (WIP.getAndIncrement(this) == 0) {
+                queue.clear();
+            }
+        }
+
+        /**
+         * Called by the worker at the tick of the next batch.
+         */
+        @Override
+        public void run() {
+            timerPending = false;
+            drain();
+        }
+
+        private void drain() {
+            if (WIP.getAndIncrement(this) != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (!timerPending) {
+                    emitDueValues();
+                }
+                missed = WIP.addAndGet(this, -missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Emits the values due at the current time, then schedules the drain at the tick of the next value.
+         */
+        private void emitDueValues() {
+            long r = requested;
+            long emitted = 0;
+            while (true) {
+                if (cancelled) {
+                    queue.clear();
+                    return;
+                }
+                boolean terminated = done;
+                T value = queue.peek();
+                if (value == null) {
+                    if (terminated) {
+                        terminate();
+                    }
+                    break;
+                }
+                if (emitted == r) {
+                    break;
+                }
+                if (emittedTotal == allowedTotal && !allowNextBatch()) {
+                    break;
+                }
+                poll();
+                emittedTotal++;
+                if (throughput != null) {
+                    throughput.record();
+                }
+                actual.onNext(value);
+                emitted++;
+            }
+            if (emitted != 0 && r != Long.MAX_VALUE) {
+                Operators.produced(REQUESTED, this, emitted);
+            }
+        }
+
+        /**
+         * @return true if more values are due, otherwise schedules the drain at the tick of the next value.
+         */
+        private boolean allowNextBatch() {
+            long now = scheduler.now(TimeUnit.NANOSECONDS);
+            if (!started) {
+                started = true;
+                startNanos = now;
+            }
+            long elapsed = now - startNanos;
+            allowedTotal = profile.count(elapsed);
+            if (allowedTotal > emittedTotal) {
+                return true;
+            }
+            long due = profile.dueNanos(emittedTotal);
+            if (due <= elapsed) {
+                // rounding of the profile
+                allowedTotal = emittedTotal + 1;
+                return true;
+            }
+            if (due != Long.MAX_VALUE) {
+                long tick = (due + TICK_NANOS - 1) / TICK_NANOS * TICK_NANOS;
+                schedule(tick - elapsed);
+            }
+            return false;
+        }
+
+        private void poll() {
+            queue.poll();
+            if (++consumed == LIMIT) {
+                consumed = 0;
+                upstream.request(LIMIT);
+            }
+        }
+
+        private void schedule(long delayNanos) {
+            timerPending = true;
+            try {
+                worker.schedule(this, delayNanos, TimeUnit.NANOSECONDS);
+            } catch (Exception e) {
+                timerPending = false;
+                if (!cancelled) {
+                    cancelled = true;
+                    upstream.cancel();
+                    worker.dispose();
+                    actual.onError(Operators.onRejectedExecution(e, actual.currentContext()));
+                }
+            }
+        }
+
+        private void terminate() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            worker.dispose();
+            if (error != null) {
+                actual.onError(error);
+            } else {
+                actual.onComplete();
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package ch.streamly.chronicle.flux.replay;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Controls a replay with the original timing while it is running: pause, resume, change the speed or seek
+ * to a timestamp, without subscribing again to the replayed values.
+ * <p>
+ * A controller is given to {@link ReplayFlux#withController(ReplayController)}, and controls all the subscriptions
+ * to the returned flux. The timestamps are in the unit of the timestamps of the replayed values.
+ * The values that are due after a change (e.g. when the speed increases) are emitted on the thread calling the controller.
+ *
+ * @author mgabriel.
+ */
+public final class ReplayController {
+    static final long NO_POSITION = Long.MIN_VALUE;
+    private static final AtomicIntegerFieldUpdater<ReplayController> VERSION =
+            AtomicIntegerFieldUpdater.newUpdater(ReplayController.class, "version");
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean paused;
+    private volatile double speed;
+    private volatile long seekTimestamp = NO_POSITION;
+    private volatile int seekCount;
+    private volatile int version;
+    private volatile long position = NO_POSITION;
+
+    /**
+     * Creates a controller replaying at the original speed.
+     */
+    public ReplayController() {
+        this(1);
+    }
+
+    /**
+     * @param speed initial time acceleration factor.
+     */
+    public ReplayController(double speed) {
+        checkSpeed(speed);
+        this.speed = speed;
+    }
+
+    private static void checkSpeed(double speed) {
+        if (speed <= 0 || Double.isNaN(speed) || Double.isInfinite(speed)) {
+            throw new IllegalArgumentException("the speed must be a positive number, got " + speed);
+        }
+    }
+
+    /**
+     * Stops the emission of the values, until {@link #resume()} is called.
+     */
+    public void pause() {
+        paused = true;
+        changed();
+    }
+
+    /**
+     * Restarts the emission of the values from the position where the replay was paused.
+     */
+    public void resume() {
+        paused = false;
+        changed();
+    }
+
+    /**
+     * @param speed time acceleration factor applied from the current position (e.g. 2 replays twice as fast as
+     *              the original timing).
+     */
+    public void speed(double speed) {
+        checkSpeed(speed);
+        this.speed = speed;
+        changed();
+    }
+
+    /**
+     * Moves the replay forward or backward to the given timestamp. The values before this timestamp are skipped
+     * without delay. If the replay has a seek source (e.g. {@code FluxJournal.replayHistory()}, which uses the time
+     * index of the journal), the values are read from the new position. Otherwise they are still read from the source
+     * but not emitted, and the source is read again from its beginning to move backward.
+     *
+     * @param timestamp timestamp of the new position of the replay.
+     */
+    public void seek(long timestamp) {
+        synchronized (this) {
+            seekTimestamp = timestamp;
+            seekCount++;
+        }
+        changed();
+    }
+
+    /**
+     * @return true if the replay is paused.
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * @return the current time acceleration factor.
+     */
+    public double speed() {
+        return speed;
+    }
+
+    /**
+     * @return the timestamp of the last value emitted, or of the last seek, {@link Long#MIN_VALUE} if none.
+     */
+    public long position() {
+        return position;
+    }
+
+    void position(long position) {
+        this.position = position;
+    }
+
+    long seekTimestamp() {
+        return seekTimestamp;
+    }
+
+    int seekCount() {
+        return seekCount;
+    }
+
+    int version() {
+        return version;
+    }
+
+    void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    void removeListener(Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    private void changed() {
+        VERSION.incrementAndGet(this);
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+}
@@ -1,13 +1,22 @@
 package ch.streamly.chronicle.flux.replay;
 
 import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.ToLongFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import ch.streamly.domain.ReplayValue;
+import org.reactivestreams.Publisher;
 import reactor.core.CoreSubscriber;
 import reactor.core.Scannable;
 import reactor.core.publisher.Flux;
 import reactor.util.annotation.NonNull;
+import reactor.util.concurrent.Queues;
 
 /**
  * A flux that can be used to replay historical values with different strategies.
@@ -15,16 +24,72 @@ import reactor.util.annotation.NonNull;
  * @param <T> data type
  */
 public class ReplayFlux<T> extends Flux<T> implements Scannable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplayFlux.class);
     private final Flux<T> source;
-    private final Function<T, Long> timestampExtractor;
+    private final ToLongFunction<T> timestampExtractor;
+    private final TimeUnit timeUnit;
+    private final LongFunction<? extends Publisher<T>> seekSource;
 
     /**
      * @param source the source flux.
      * @param timestampExtractor extracts the epoch time in ms from the values.
      */
     public ReplayFlux(Flux<T> source, Function<T, Long> timestampExtractor) {
+        this(source, timestampExtractor::apply, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param source the source flux.
+     * @param timestampExtractor extracts the timestamp from the values.
+     * @param timeUnit unit of the timestamps (e.g. nanoseconds for sub-millisecond timing).
+     */
+    public ReplayFlux(Flux<T> source, ToLongFunction<T> timestampExtractor, TimeUnit timeUnit) {
+        this(source, timestampExtractor, timeUnit, null);
+    }
+
+    private ReplayFlux(Flux<T> source, ToLongFunction<T> timestampExtractor, TimeUnit timeUnit,
+            LongFunction<? extends Publisher<T>> seekSource) {
         this.source = source;
         this.timestampExtractor = timestampExtractor;
+        this.timeUnit = timeUnit;
+        this.seekSource = seekSource;
+    }
+
+    /**
+     * Gives the values from a timestamp without reading the values before it (e.g. with the time index of a journal),
+     * so that a replay with a {@link ReplayController} seeks forward or backward without reading the source again
+     * from its beginning. It is used by {@link #withController(ReplayController)} applied directly on the returned flux.
+     *
+     * @param seekSource gives the values timed at or after a timestamp, in the unit of the timestamps of the values.
+     * @return a flux that will replay the same values, and use the seek source when the replay seeks.
+     */
+    public ReplayFlux<T> withSeekSource(LongFunction<? extends Publisher<T>> seekSource) {
+        return new ReplayFlux<>(source, timestampExtractor, timeUnit, seekSource);
+    }
+
+    /**
+     * @param timestampExtractor extracts the epoch time in ms from the values.
+     * @param sources            sources ordered by time.
+     * @param <T>                data type
+     * @return a flux that can be used to replay the values of all the sources, merged in time order.
+     */
+    @SafeVarargs
+    public static <T> ReplayFlux<T> merge(Function<T, Long> timestampExtractor, Publisher<? extends T>... sources) {
+        return merge(timestampExtractor::apply, TimeUnit.MILLISECONDS, Queues.SMALL_BUFFER_SIZE, sources);
+    }
+
+    /**
+     * @param timestampExtractor extracts the timestamp from the values.
+     * @param timeUnit           unit of the timestamps.
+     * @param prefetch           maximum number of values read ahead from each source.
+     * @param sources            sources ordered by time.
+     * @param <T>                data type
+     * @return a flux that can be used to replay the values of all the sources, merged in time order.
+     */
+    @SafeVarargs
+    public static <T> ReplayFlux<T> merge(ToLongFunction<T> timestampExtractor, TimeUnit timeUnit, int prefetch,
+            Publisher<? extends T>... sources) {
+        return new ReplayFlux<>(new TimeOrderedMerge<>(sources, timestampExtractor, prefetch), timestampExtractor, timeUnit);
     }
 
     @Override
@@ -46,7 +111,7 @@ public class ReplayFlux<T> extends Flux<T> implements Scannable {
      * (e.g. if the values were received with a 1 second interval, the returned flux will emit at a 1 second interval).
      */
     public ReplayFlux<T> withOriginalTiming(){
-        return new ReplayFlux<>(source.transform(new ReplayWithOriginalTiming<>(timestampExtractor)), timestampExtractor);
+        return withTimeAcceleration(1);
     }
 
     /**
@@ -55,7 +120,133 @@ public class ReplayFlux<T> extends Flux<T> implements Scannable {
      * (e.g. if the values were received with a 2 second interval, and the time acceleration is 2, then the returned flux will emit at a 1 second interval).
      */
     public ReplayFlux<T> withTimeAcceleration(double acceleration){
-        return new ReplayFlux<>(source.transform(new ReplayWithOriginalTiming<>(timestampExtractor, acceleration)), timestampExtractor);
+        return new ReplayFlux<>(source.transform(new ReplayWithOriginalTiming<>(timestampExtractor, timeUnit, acceleration)),
+                timestampExtractor, timeUnit);
+    }
+
+    /**
+     * To seek backward, the source is read again from its beginning, unless a seek source is set with
+     * {@link #withSeekSource(LongFunction)}.
+     *
+     * @param controller handle used to pause, resume, change the speed or seek the replay while it is running.
+     * @return a flux that will replay the values with their original timing, at the speed set by the controller.
+     */
+    public ReplayFlux<T> withController(ReplayController controller) {
+        return new ReplayFlux<>(source.transform(new ReplayWithOriginalTiming<>(timestampExtractor, timeUnit, controller,
+                seekSource)),
+                timestampExtractor, timeUnit);
+    }
+
+    /**
+     * Sorts slightly out-of-order values by timestamp before the timing of the replay is applied, e.g.
+     * {@code withReordering(Duration.ofMillis(100), 10_000).withOriginalTiming()}.
+     * The values arriving beyond the reorder window are dropped and logged.
+     *
+     * @param maxLateness maximum lateness of a value compared to the most recent value received.
+     * @param maxValues   maximum number of values held in the reorder window.
+     * @return a flux that will replay the values sorted by timestamp within the window.
+     */
+    public ReplayFlux<T> withReordering(Duration maxLateness, int maxValues) {
+        return withReordering(maxLateness, maxValues,
+                value -> LOGGER.warn("Dropped a value arriving beyond the reorder window: {}", value));
+    }
+
+    /**
+     * Sorts slightly out-of-order values by timestamp before the timing of the replay is applied.
+     *
+     * @param maxLateness      maximum lateness of a value compared to the most recent value received.
+     * @param maxValues        maximum number of values held in the reorder window.
+     * @param lateValueHandler receives the values arriving beyond the reorder window, which are dropped from the replay.
+     * @return a flux that will replay the values sorted by timestamp within the window.
+     */
+    public ReplayFlux<T> withReordering(Duration maxLateness, int maxValues, Consumer<? super T> lateValueHandler) {
+        return new ReplayFlux<>(new ReorderFlux<>(source, timestampExtractor, timeUnit, maxLateness.toNanos(), maxValues,
+                lateValueHandler), timestampExtractor, timeUnit);
+    }
+
+    /**
+     * Replays the values as fast as they are consumed, advancing the clock of the scheduler to the timestamp of each
+     * value before emitting it. The time-based operators using this scheduler downstream (e.g.
+     * {@code buffer(Duration.ofSeconds(1), scheduler)}) behave as if the values were replayed with their original timing.
+     *
+     * @param scheduler scheduler whose clock follows the timestamps of the values.
+     * @return a flux that will replay the values in virtual time.
+     */
+    public ReplayFlux<T> withVirtualTime(ReplayScheduler scheduler) {
+        return new ReplayFlux<>(source.doOnNext(value -> scheduler.advanceTo(timeUnit.toNanos(timestampExtractor.applyAsLong(value)))),
+                timestampExtractor, timeUnit);
+    }
+
+    /**
+     * @param eventsPerSecond rate of the replay.
+     * @return a flux that will replay the values at a fixed rate, ignoring their original timing.
+     */
+    public ReplayFlux<T> withFixedRate(double eventsPerSecond) {
+        return withLoadProfile(LoadProfile.constant(eventsPerSecond));
+    }
+
+    /**
+     * @param profile rate of the replay over time (e.g. a ramp-up or steps).
+     * @return a flux that will replay the values at the rate of the profile, ignoring their original timing.
+     */
+    public ReplayFlux<T> withLoadProfile(LoadProfile profile) {
+        return new ReplayFlux<>(new ReplayAtRate<>(source, profile, null), timestampExtractor, timeUnit);
+    }
+
+    /**
+     * @param profile    rate of the replay over time (e.g. a ramp-up or steps).
+     * @param throughput measures the throughput actually reached by the replay.
+     * @return a flux that will replay the values at the rate of the profile, ignoring their original timing.
+     */
+    public ReplayFlux<T> withLoadProfile(LoadProfile profile, ReplayThroughput throughput) {
+        return new ReplayFlux<>(new ReplayAtRate<>(source, profile, throughput), timestampExtractor, timeUnit);
+    }
+
+    /**
+     * @param throughput measures the throughput of the replay.
+     * @return a flux that will replay the values as fast as they are requested, ignoring their original timing.
+     */
+    public ReplayFlux<T> withMaxSpeed(ReplayThroughput throughput) {
+        return new ReplayFlux<>(source.doOnNext(v -> throughput.record()), timestampExtractor, timeUnit);
+    }
+
+    /**
+     * Reads the values from their source on the first subscription only, and from the cache on the following ones,
+     * as long as the values fit in the cache. Apply it before the timing of the replay, e.g.
+     * {@code withLoopCache(cache).withOriginalTiming().inLoop()}.
+     *
+     * @param cache cache of the values.
+     * @return a flux that will replay the values from the cache once it is filled.
+     */
+    public ReplayFlux<T> withLoopCache(LoopCache<T> cache) {
+        return new ReplayFlux<>(cache.cache(source), timestampExtractor, timeUnit);
+    }
+
+    /**
+     * Reads the values from their source ahead of the replay, so that the timing of the replay does not depend
+     * on the latency of the reads. Apply it before the timing of the replay, e.g.
+     * {@code withReadAhead(100_000).withOriginalTiming()}.
+     *
+     * @param maxValues maximum number of values read ahead.
+     * @return a flux that will read ahead up to {@code maxValues} values.
+     */
+    public ReplayFlux<T> withReadAhead(int maxValues) {
+        return new ReplayFlux<>(new ReadAheadFlux<>(source, timestampExtractor, timeUnit, Long.MAX_VALUE, maxValues),
+                timestampExtractor, timeUnit);
+    }
+
+    /**
+     * Reads the values from their source ahead of the replay, until the values read ahead span the given horizon
+     * of original time (e.g. "keep 2 seconds of data ready"), or reach the maximum number of values.
+     * Apply it before the timing of the replay.
+     *
+     * @param horizon   time span of the values read ahead, in original time.
+     * @param maxValues maximum number of values read ahead.
+     * @return a flux that will read ahead the values of the given horizon.
+     */
+    public ReplayFlux<T> withReadAhead(Duration horizon, int maxValues) {
+        return new ReplayFlux<>(new ReadAheadFlux<>(source, timestampExtractor, timeUnit, horizon.toNanos(), maxValues),
+                timestampExtractor, timeUnit);
     }
 
     /**
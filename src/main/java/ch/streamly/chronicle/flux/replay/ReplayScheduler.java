@@ -0,0 +1,263 @@
+package ch.streamly.chronicle.flux.replay;
+
+import java.time.Instant;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.Exceptions;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * A scheduler whose clock is the time of a replay, used to replay a history as fast as it is consumed while
+ * keeping the semantics of the time-based operators (e.g. {@code buffer(Duration, Scheduler)},
+ * {@code window(Duration, Scheduler)} or {@code Flux.interval(Duration, Scheduler)}).
+ * <p>
+ * The clock is advanced by {@link ReplayFlux#withVirtualTime(ReplayScheduler)} to the timestamp of each value before
+ * it is emitted. The tasks due before this timestamp run first, on the thread emitting the value, with the clock set
+ * to their due time. The tasks scheduled without a delay run on the calling thread.
+ * If no start time is given, the clock starts at the timestamp of the first value, and the tasks scheduled before
+ * keep their delay relative to it.
+ *
+ * @author mgabriel.
+ */
+public final class ReplayScheduler implements Scheduler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplayScheduler.class);
+    private final PriorityQueue<TimedTask> queue = new PriorityQueue<>();
+    private final AtomicInteger wip = new AtomicInteger();
+    private volatile long nanos;
+    private volatile boolean disposed;
+    private boolean started;
+    private long targetNanos;
+    private long sequence;
+
+    /**
+     * Creates a scheduler whose clock starts at the timestamp of the first value replayed.
+     */
+    public ReplayScheduler() {
+    }
+
+    /**
+     * @param start start time of the clock.
+     */
+    public ReplayScheduler(Instant start) {
+        nanos = TimeUnit.SECONDS.toNanos(start.getEpochSecond()) + start.getNano();
+        targetNanos = nanos;
+        started = true;
+    }
+
+    @Override
+    public long now(TimeUnit unit) {
+        return unit.convert(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public Disposable schedule(Runnable task) {
+        return schedule(task, 0, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public Disposable schedule(Runnable task, long delay, TimeUnit unit) {
+        return enqueue(task, unit.toNanos(delay), 0);
+    }
+
+    @Override
+    public Disposable schedulePeriodically(Runnable task, long initialDelay, long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("the period must be positive, got " + period);
+        }
+        return enqueue(task, unit.toNanos(initialDelay), unit.toNanos(period));
+    }
+
+    @Override
+    public Worker createWorker() {
+        return new ReplayWorker();
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+        synchronized (this) {
+            queue.clear();
+        }
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return disposed;
+    }
+
+    /**
+     * Advances the clock to the given time, and runs the tasks due until then. The clock never goes back.
+     *
+     * @param timeNanos time in nanoseconds since the epoch.
+     */
+    void advanceTo(long timeNanos) {
+        synchronized (this) {
+            if (!started) {
+                started = true;
+                long shift = timeNanos - nanos;
+                for (TimedTask task : queue) {
+                    task.time += shift;
+                }
+                nanos = timeNanos;
+            }
+            targetNanos = Math.max(targetNanos, timeNanos);
+        }
+        drain();
+    }
+
+    private TimedTask enqueue(Runnable action, long delayNanos, long periodNanos) {
+        if (disposed) {
+            throw Exceptions.failWithRejected();
+        }
+        TimedTask task;
+        synchronized (this) {
+            task = new TimedTask(action, nanos + Math.max(delayNanos, 0), periodNanos, null);
+            queue.add(task);
+        }
+        drain();
+        return task;
+    }
+
+    /**
+     * Runs the tasks due until the target time. A task scheduled by a task runs in the same drain loop if it is due.
+     */
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            TimedTask task;
+            while ((task = pollDue()) != null) {
+                task.run();
+            }
+            synchronized (this) {
+                nanos = Math.max(nanos, targetNanos);
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private synchronized TimedTask pollDue() {
+        TimedTask task = queue.peek();
+        if (task == null || task.time > Math.max(nanos, targetNanos)) {
+            return null;
+        }
+        queue.poll();
+        nanos = Math.max(nanos, task.time);
+        return task;
+    }
+
+    private synchronized void reschedule(TimedTask task) {
+        if (!disposed) {
+            task.time += task.period;
+            task.sequence = sequence++;
+            queue.add(task);
+        }
+    }
+
+    private final class TimedTask implements Runnable, Disposable, Comparable<TimedTask> {
+        private final Runnable action;
+        private final long period;
+        private final Disposable.Composite tasks;
+        private long time;
+        private long sequence;
+        private volatile boolean disposed;
+
+        private TimedTask(Runnable action, long time, long period, Disposable.Composite tasks) {
+            this.action = action;
+            this.time = time;
+            this.period = period;
+            this.tasks = tasks;
+            this.sequence = ReplayScheduler.this.sequence++;
+        }
+
+        @Override
+        public void run() {
+            if (disposed) {
+                return;
+            }
+            try {
+                action.run();
+            } catch (Throwable e) {
+                Exceptions.throwIfFatal(e);
+                LOGGER.error("Error while running a task at replay time " + time, e);
+            }
+            if (period > 0) {
+                reschedule(this);
+            } else if (tasks != null) {
+                tasks.remove(this);
+            }
+        }
+
+        @Override
+        public void dispose() {
+            disposed = true;
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return disposed;
+        }
+
+        @Override
+        public int compareTo(TimedTask other) {
+            int byTime = Long.compare(time, other.time);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private final class ReplayWorker implements Worker {
+        private final Disposable.Composite tasks = Disposables.composite();
+
+        @Override
+        public Disposable schedule(Runnable task) {
+            return schedule(task, 0, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public Disposable schedule(Runnable task, long delay, TimeUnit unit) {
+            return add(task, unit.toNanos(delay), 0);
+        }
+
+        @Override
+        public Disposable schedulePeriodically(Runnable task, long initialDelay, long period, TimeUnit unit) {
+            if (period <= 0) {
+                throw new IllegalArgumentException("the period must be positive, got " + period);
+            }
+            return add(task, unit.toNanos(initialDelay), unit.toNanos(period));
+        }
+
+        private Disposable add(Runnable task, long delayNanos, long periodNanos) {
+            if (tasks.isDisposed()) {
+                throw Exceptions.failWithRejected();
+            }
+            // the task is added to the worker before it can run
+            TimedTask timedTask;
+            synchronized (ReplayScheduler.this) {
+                timedTask = new TimedTask(task, nanos + Math.max(delayNanos, 0), periodNanos, tasks);
+                tasks.add(timedTask);
+                queue.add(timedTask);
+            }
+            drain();
+            return timedTask;
+        }
+
+        @Override
+        public void dispose() {
+            tasks.dispose();
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return tasks.isDisposed();
+        }
+    }
+}
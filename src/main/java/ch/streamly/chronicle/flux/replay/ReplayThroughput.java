@@ -0,0 +1,61 @@
+package ch.streamly.chronicle.flux.replay;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of a replay, from its first value to its last value.
+ *
+ * @author mgabriel.
+ */
+public final class ReplayThroughput {
+    private volatile long count;
+    private volatile long firstNanos;
+    private volatile long lastNanos;
+
+    /**
+     * Records the emission of a value. It must be called by a single thread at a time.
+     */
+    void record() {
+        long now = System.nanoTime();
+        if (count == 0) {
+            firstNanos = now;
+        }
+        lastNanos = now;
+        count++;
+    }
+
+    /**
+     * @return the number of values replayed.
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @param unit time unit
+     * @return the time elapsed between the first and the last value replayed.
+     */
+    public long elapsed(TimeUnit unit) {
+        return unit.convert(lastNanos - firstNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the number of values replayed per second, or 0 if less than two values were replayed.
+     */
+    public double eventsPerSecond() {
+        long values = count;
+        long elapsed = lastNanos - firstNanos;
+        if (values < 2 || elapsed <= 0) {
+            return 0;
+        }
+        return (values - 1) * 1_000_000_000d / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return "ReplayThroughput{" +
+                "count=" + count +
+                ", eventsPerSecond=" + eventsPerSecond() +
+                '}';
+    }
+}
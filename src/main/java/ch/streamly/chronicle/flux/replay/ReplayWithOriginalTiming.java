@@ -1,25 +1,48 @@
 package ch.streamly.chronicle.flux.replay;
 
-import static java.time.Duration.ofMillis;
-
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.function.Function;
-import java.util.function.Predicate;
+import java.util.function.LongFunction;
+import java.util.function.ToLongFunction;
 
-import ch.streamly.domain.Timed;
-import ch.streamly.domain.TimedValue;
 import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.Disposable;
+import reactor.core.Exceptions;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxOperator;
+import reactor.core.publisher.Operators;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.annotation.NonNull;
+import reactor.util.concurrent.Queues;
+import reactor.util.context.Context;
 
 /**
  * A transformer that takes a source flux and replays the values with their original timing.
  * It is also possible to specify a time acceleration factor to increase or decrease the replay speed.
+ * <p>
+ * Each value is emitted at a time computed from the start of the replay and the time elapsed since the first value,
+ * not from the emission of the previous value, so that the scheduling delays do not accumulate over the replay.
+ * The values sharing the same timestamp are emitted in a single burst. The emissions are scheduled on a single
+ * worker of the scheduler, and no object is allocated per value.
+ * <p>
+ * When the controller seeks to another timestamp, the values before it are skipped. To seek backward, the source
+ * is subscribed again and read from its beginning, unless a seek source gives the values from a timestamp
+ * (e.g. the time index of a journal), in which case it is used for every seek.
  *
  * @param <T> data type
  */
 public class ReplayWithOriginalTiming<T> implements Function<Flux<T>, Publisher<T>> {
-    private final Function<T, Long> timestampExtractor;
-    private final double timeAcceleration;
-    private final Timed<T> TOKEN = new TimedValue<>(0, null);
+    private final ToLongFunction<T> timestampExtractor;
+    private final TimeUnit timeUnit;
+    private final ReplayController controller;
+    private final LongFunction<? extends Publisher<T>> seekSource;
 
     /**
      * @param timestampExtractor extracts the epoch time in ms from the values.
@@ -33,58 +56,378 @@ public class ReplayWithOriginalTiming<T> implements Function<Flux<T>, Publisher<
      * @param timeAcceleration time acceleration factor.
      */
     public ReplayWithOriginalTiming(Function<T, Long> timestampExtractor, double timeAcceleration) {
+        this(timestampExtractor::apply, TimeUnit.MILLISECONDS, timeAcceleration);
+    }
+
+    /**
+     * @param timestampExtractor extracts the timestamp from the values.
+     * @param timeUnit unit of the timestamps (e.g. nanoseconds).
+     * @param timeAcceleration time acceleration factor.
+     */
+    public ReplayWithOriginalTiming(ToLongFunction<T> timestampExtractor, TimeUnit timeUnit, double timeAcceleration) {
+        this(timestampExtractor, timeUnit, new ReplayController(timeAcceleration));
+    }
+
+    /**
+     * @param timestampExtractor extracts the timestamp from the values.
+     * @param timeUnit unit of the timestamps (e.g. nanoseconds).
+     * @param controller controls the speed and the position of the replay while it is running.
+     */
+    public ReplayWithOriginalTiming(ToLongFunction<T> timestampExtractor, TimeUnit timeUnit, ReplayController controller) {
+        this(timestampExtractor, timeUnit, controller, null);
+    }
+
+    /**
+     * @param timestampExtractor extracts the timestamp from the values.
+     * @param timeUnit unit of the timestamps (e.g. nanoseconds).
+     * @param controller controls the speed and the position of the replay while it is running.
+     * @param seekSource gives the values timed at or after a timestamp, null to read the source from its beginning.
+     */
+    public ReplayWithOriginalTiming(ToLongFunction<T> timestampExtractor, TimeUnit timeUnit, ReplayController controller,
+            LongFunction<? extends Publisher<T>> seekSource) {
         this.timestampExtractor = timestampExtractor;
-        this.timeAcceleration = timeAcceleration;
+        this.timeUnit = timeUnit;
+        this.controller = controller;
+        this.seekSource = seekSource;
     }
 
     @Override
     public Publisher<T> apply(Flux<T> source) {
-        Flux<Timed<T>> timedFlux = source.map(v -> new TimedValue<>(timestampExtractor.apply(v), v));
-        return timedFlux.scan(new TimedValuePair<>(TOKEN, TOKEN),
-                (acc, val) -> new TimedValuePair<>(acc.second, val))
-                .filter(filterFirstValue())
-                .map(calculateDelay())
-                .delayUntil(applyDelay())
-                .map(ValueToDelay::value);
+        return new OriginalTimingFlux<>(source, timestampExtractor, timeUnit, controller, seekSource,
+                Schedulers.parallel());
     }
 
-    private Predicate<TimedValuePair<T>> filterFirstValue() {
-        return tvp -> tvp.second != TOKEN;
+    private static final class OriginalTimingFlux<T> extends FluxOperator<T, T> {
+        private final ToLongFunction<T> timestampExtractor;
+        private final TimeUnit timeUnit;
+        private final ReplayController controller;
+        private final LongFunction<? extends Publisher<T>> seekSource;
+        private final Scheduler scheduler;
+
+        private OriginalTimingFlux(Flux<T> source, ToLongFunction<T> timestampExtractor, TimeUnit timeUnit,
+                ReplayController controller, LongFunction<? extends Publisher<T>> seekSource, Scheduler scheduler) {
+            super(source);
+            this.timestampExtractor = timestampExtractor;
+            this.timeUnit = timeUnit;
+            this.controller = controller;
+            this.seekSource = seekSource;
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public void subscribe(@NonNull CoreSubscriber<? super T> actual) {
+            new OriginalTimingSubscriber<>(actual, source, this).start();
+        }
     }
 
-    private Function<TimedValuePair<T>, ValueToDelay<T>> calculateDelay() {
-        return tvp -> {
-            long timeDifference = Double.valueOf(tvp.timeDifference() / timeAcceleration).longValue();
-            if (timeDifference < 0 || tvp.first == TOKEN) {
-                timeDifference = 0;
+    /**
+     * Emits each value when the replay clock reaches its timestamp. The replay clock is anchored on a timestamp at
+     * a given time, and advances at the speed of the controller. It is anchored again when the controller changes.
+     * <p>
+     * Each subscription to the source has its own queue, so that the values of a source being cancelled after a seek
+     * are never mixed with the values of the new source.
+     */
+    private static final class OriginalTimingSubscriber<T> implements Subscription, Runnable {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicLongFieldUpdater<OriginalTimingSubscriber> REQUESTED =
+                AtomicLongFieldUpdater.newUpdater(OriginalTimingSubscriber.class, "requested");
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<OriginalTimingSubscriber> WIP =
+                AtomicIntegerFieldUpdater.newUpdater(OriginalTimingSubscriber.class, "wip");
+        private final CoreSubscriber<? super T> actual;
+        private final Flux<? extends T> source;
+        private final LongFunction<? extends Publisher<T>> seekSource;
+        private final ToLongFunction<T> timestampExtractor;
+        private final TimeUnit timeUnit;
+        private final ReplayController controller;
+        private final Scheduler scheduler;
+        private final Scheduler.Worker worker;
+        private final Runnable controlListener = this::drain;
+        private volatile SourceSubscriber<T> current;
+        private volatile long requested;
+        private volatile int wip;
+        private volatile boolean cancelled;
+        private volatile boolean timerPending;
+        private Disposable timer;
+        private int controlVersion;
+        private int seekCount;
+        private boolean paused;
+        private double speed;
+        private boolean started;
+        private long anchorNanos;
+        private long anchorTimestampNanos;
+        private long skipUntilNanos = Long.MIN_VALUE;
+        private long lastEmittedNanos = Long.MIN_VALUE;
+
+        private OriginalTimingSubscriber(CoreSubscriber<? super T> actual, Flux<? extends T> source, OriginalTimingFlux<T> parent) {
+            this.actual = actual;
+            this.source = source;
+            this.seekSource = parent.seekSource;
+            this.timestampExtractor = parent.timestampExtractor;
+            this.timeUnit = parent.timeUnit;
+            this.controller = parent.controller;
+            this.scheduler = parent.scheduler;
+            this.worker = scheduler.createWorker();
+            controlVersion = controller.version();
+            seekCount = controller.seekCount();
+            paused = controller.isPaused();
+            speed = controller.speed();
+        }
+
+        private void start() {
+            current = new SourceSubscriber<>(this);
+            controller.addListener(controlListener);
+            actual.onSubscribe(this);
+            source.subscribe(current);
+        }
+
+        @Override
+        public void request(long n) {
+            if (Operators.validate(n)) {
+                Operators.addCap(REQUESTED, this, n);
+                drain();
             }
-            return new ValueToDelay<>(timeDifference, tvp.second.value());
-        };
-    }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            current.cancel();
+            dispose();
+            if (WIP.getAndIncrement(this) == 0) {
+                current.queue.clear();
+            }
+        }
+
+        private void dispose() {
+            controller.removeListener(controlListener);
+            worker.dispose();
+        }
+
+        /**
+         * Called by the worker when the next value is due.
+         */
+        @Override
+        public void run() {
+            timerPending = false;
+            drain();
+        }
+
+        private void drain() {
+            if (WIP.getAndIncrement(this) != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (controlVersion != controller.version()) {
+                    applyControl();
+                }
+                if (!timerPending) {
+                    emitDueValues();
+                }
+                missed = WIP.addAndGet(this, -missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Anchors the replay clock on its current position, with the new state of the controller.
+         */
+        private void applyControl() {
+            controlVersion = controller.version();
+            if (timer != null) {
+                timer.dispose();
+                timer = null;
+                timerPending = false;
+            }
+            long now = scheduler.now(TimeUnit.NANOSECONDS);
+            if (started) {
+                anchorTimestampNanos = replayTime(now);
+                anchorNanos = now;
+            }
+            paused = controller.isPaused();
+            speed = controller.speed();
+            if (seekCount != controller.seekCount()) {
+                seekCount = controller.seekCount();
+                seek(controller.seekTimestamp(), now);
+            }
+        }
+
+        /**
+         * Skips the values before the timestamp, after reading the source again if the timestamp is before
+         * the values already emitted.
+         */
+        private void seek(long timestamp, long now) {
+            long timestampNanos = timeUnit.toNanos(timestamp);
+            if (seekSource != null || timestampNanos < lastEmittedNanos) {
+                SourceSubscriber<T> previous = current;
+                previous.cancel();
+                previous.queue.clear();
+                current = new SourceSubscriber<>(this);
+                lastEmittedNanos = Long.MIN_VALUE;
+                (seekSource != null ? seekSource.apply(timestamp) : source).subscribe(current);
+            }
+            skipUntilNanos = timestampNanos;
+            started = true;
+            anchorTimestampNanos = timestampNanos;
+            anchorNanos = now;
+            controller.position(timestamp);
+        }
+
+        private long replayTime(long now) {
+            return paused ? anchorTimestampNanos : anchorTimestampNanos + (long) ((now - anchorNanos) * speed);
+        }
+
+        /**
+         * Emits the values until a value is not due yet, in which case the drain is scheduled at its due time.
+         */
+        private void emitDueValues() {
+            SourceSubscriber<T> source = current;
+            Queue<T> queue = source.queue;
+            long r = requested;
+            long emitted = 0;
+            long now = 0;
+            while (true) {
+                if (cancelled) {
+                    queue.clear();
+                    return;
+                }
+                boolean terminated = source.done;
+                T value = queue.peek();
+                if (value == null) {
+                    if (terminated) {
+                        terminate(source.error);
+                    }
+                    break;
+                }
+                long timestamp = timestampExtractor.applyAsLong(value);
+                long timestampNanos = timeUnit.toNanos(timestamp);
+                if (timestampNanos < skipUntilNanos) {
+                    source.poll();
+                    continue;
+                }
+                if (emitted == r || paused) {
+                    break;
+                }
+                if (!started) {
+                    started = true;
+                    now = scheduler.now(TimeUnit.NANOSECONDS);
+                    anchorNanos = now;
+                    anchorTimestampNanos = timestampNanos;
+                }
+                long due = anchorNanos + (long) ((timestampNanos - anchorTimestampNanos) / speed);
+                if (due - now > 0) {
+                    // values of the same timestamp are emitted in a burst, the clock is only read again after it
+                    now = scheduler.now(TimeUnit.NANOSECONDS);
+                    if (due - now > 0) {
+                        schedule(due - now);
+                        break;
+                    }
+                }
+                source.poll();
+                lastEmittedNanos = timestampNanos;
+                controller.position(timestamp);
+                actual.onNext(value);
+                emitted++;
+            }
+            if (emitted != 0 && r != Long.MAX_VALUE) {
+                Operators.produced(REQUESTED, this, emitted);
+            }
+        }
 
-    private Function<ValueToDelay<T>, Publisher<?>> applyDelay() {
-        return vtd -> Flux.just(TOKEN).delayElements(ofMillis(vtd.delay()));
+        private void schedule(long delayNanos) {
+            timerPending = true;
+            try {
+                timer = worker.schedule(this, delayNanos, TimeUnit.NANOSECONDS);
+            } catch (Exception e) {
+                timerPending = false;
+                if (!cancelled) {
+                    cancelled = true;
+                    current.cancel();
+                    dispose();
+                    actual.onError(Operators.onRejectedExecution(e, actual.currentContext()));
+                }
+            }
+        }
+
+        private void terminate(Throwable error) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            dispose();
+            if (error != null) {
+                actual.onError(error);
+            } else {
+                actual.onComplete();
+            }
+        }
     }
 
-    private static class TimedValuePair<T> {
-        private final Timed<T> first;
-        private final Timed<T> second;
+    /**
+     * Subscription to the source, from the start of the replay or from a seek.
+     */
+    private static final class SourceSubscriber<T> implements CoreSubscriber<T> {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<SourceSubscriber, Subscription> UPSTREAM =
+                AtomicReferenceFieldUpdater.newUpdater(SourceSubscriber.class, Subscription.class, "upstream");
+        private static final int PREFETCH = Queues.SMALL_BUFFER_SIZE;
+        private static final int LIMIT = PREFETCH - (PREFETCH >> 2);
+        private final OriginalTimingSubscriber<T> parent;
+        private final Queue<T> queue = Queues.<T>get(PREFETCH).get();
+        private volatile Subscription upstream;
+        private volatile boolean done;
+        private Throwable error;
+        private int consumed;
+
+        private SourceSubscriber(OriginalTimingSubscriber<T> parent) {
+            this.parent = parent;
+        }
+
+        @Override
+        public Context currentContext() {
+            return parent.actual.currentContext();
+        }
+
+        @Override
+        public void onSubscribe(@NonNull Subscription s) {
+            if (Operators.setOnce(UPSTREAM, this, s)) {
+                s.request(PREFETCH);
+            }
+        }
 
-        private TimedValuePair(Timed<T> first, Timed<T> second) {
-            this.first = first;
-            this.second = second;
+        @Override
+        public void onNext(T value) {
+            if (!queue.offer(value)) {
+                cancel();
+                onError(Exceptions.failWithOverflow("Queue is full: Reactive Streams source doesn't respect backpressure"));
+                return;
+            }
+            parent.drain();
         }
 
-        private long timeDifference() {
-            return second.time() - first.time();
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+            done = true;
+            parent.drain();
         }
 
         @Override
-        public String toString() {
-            return "TimedValuePair{" +
-                    "first=" + first +
-                    ", second=" + second +
-                    '}';
+        public void onComplete() {
+            done = true;
+            parent.drain();
+        }
+
+        private void poll() {
+            queue.poll();
+            if (++consumed == LIMIT) {
+                consumed = 0;
+                upstream.request(LIMIT);
+            }
+        }
+
+        private void cancel() {
+            Operators.terminate(UPSTREAM, this);
         }
     }
 }
@@ -0,0 +1,304 @@
+package ch.streamly.chronicle.flux.replay;
+
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.ToLongFunction;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Operators;
+import reactor.util.annotation.NonNull;
+import reactor.util.concurrent.Queues;
+
+/**
+ * Merges sources ordered by time into a single flux ordered by time.
+ * The next value is selected with a binary heap of the timestamps of the head value of each source,
+ * so that each value costs O(log(sources)) comparisons, without allocation.
+ * Each source reads ahead at most {@code prefetch} values. Values with the same timestamp are emitted
+ * in the order of their sources.
+ *
+ * @param <T> data type
+ * @author mgabriel.
+ */
+final class TimeOrderedMerge<T> extends Flux<T> {
+    private final Publisher<? extends T>[] sources;
+    private final ToLongFunction<T> timestampExtractor;
+    private final int prefetch;
+
+    TimeOrderedMerge(Publisher<? extends T>[] sources, ToLongFunction<T> timestampExtractor, int prefetch) {
+        if (prefetch < 1) {
+            throw new IllegalArgumentException("the prefetch must be positive, got " + prefetch);
+        }
+        this.sources = sources;
+        this.timestampExtractor = timestampExtractor;
+        this.prefetch = prefetch;
+    }
+
+    @Override
+    public void subscribe(@NonNull CoreSubscriber<? super T> actual) {
+        MergeCoordinator<T> coordinator = new MergeCoordinator<>(actual, sources.length, timestampExtractor, prefetch);
+        actual.onSubscribe(coordinator);
+        for (int i = 0; i < sources.length && !coordinator.cancelled; i++) {
+            sources[i].subscribe(coordinator.inners[i]);
+        }
+    }
+
+    private static final class MergeCoordinator<T> implements Subscription {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicLongFieldUpdater<MergeCoordinator> REQUESTED =
+                AtomicLongFieldUpdater.newUpdater(MergeCoordinator.class, "requested");
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<MergeCoordinator> WIP =
+                AtomicIntegerFieldUpdater.newUpdater(MergeCoordinator.class, "wip");
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<MergeCoordinator, Throwable> ERROR =
+                AtomicReferenceFieldUpdater.newUpdater(MergeCoordinator.class, Throwable.class, "error");
+        private final CoreSubscriber<? super T> actual;
+        private final MergeInner<T>[] inners;
+        private final ToLongFunction<T> timestampExtractor;
+        // binary heap of the sources having a head value, ordered by timestamp then by source
+        private final int[] heap;
+        private final long[] heapTimes;
+        // sources without a head value, which may still produce values
+        private final int[] pending;
+        private int heapSize;
+        private int pendingSize;
+        private volatile long requested;
+        private volatile int wip;
+        private volatile Throwable error;
+        private volatile boolean cancelled;
+
+        @SuppressWarnings("unchecked")
+        private MergeCoordinator(CoreSubscriber<? super T> actual, int sourceCount, ToLongFunction<T> timestampExtractor,
+                int prefetch) {
+            this.actual = actual;
+            this.timestampExtractor = timestampExtractor;
+            inners = new MergeInner[sourceCount];
+            heap = new int[sourceCount];
+            heapTimes = new long[sourceCount];
+            pending = new int[sourceCount];
+            for (int i = 0; i < sourceCount; i++) {
+                inners[i] = new MergeInner<>(this, prefetch);
+                pending[i] = i;
+            }
+            pendingSize = sourceCount;
+        }
+
+        @Override
+        public void request(long n) {
+            if (Operators.validate(n)) {
+                Operators.addCap(REQUESTED, this, n);
+                drain();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                cancelInners();
+                if (WIP.getAndIncrement(this) == 0) {
+                    clearInners();
+                }
+            }
+        }
+
+        private void cancelInners() {
+            for (MergeInner<T> inner : inners) {
+                inner.cancel();
+            }
+        }
+
+        private void clearInners() {
+            for (MergeInner<T> inner : inners) {
+                inner.queue.clear();
+            }
+        }
+
+        private void onError(Throwable e) {
+            if (Exceptions.addThrowable(ERROR, this, e)) {
+                drain();
+            } else {
+                Operators.onErrorDropped(e, actual.currentContext());
+            }
+        }
+
+        private void drain() {
+            if (WIP.getAndIncrement(this) != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                long r = requested;
+                long emitted = 0;
+                while (true) {
+                    if (cancelled) {
+                        clearInners();
+                        return;
+                    }
+                    if (error != null) {
+                        cancelled = true;
+                        cancelInners();
+                        clearInners();
+                        actual.onError(Exceptions.terminate(ERROR, this));
+                        return;
+                    }
+                    if (!fillHeap()) {
+                        break; // a source has no value yet, the next value is unknown
+                    }
+                    if (heapSize == 0) {
+                        cancelled = true;
+                        actual.onComplete();
+                        return;
+                    }
+                    if (emitted == r) {
+                        break;
+                    }
+                    int source = heap[0];
+                    MergeInner<T> inner = inners[source];
+                    T value = inner.queue.poll();
+                    inner.consumed();
+                    removeTop();
+                    pending[pendingSize++] = source;
+                    actual.onNext(value);
+                    emitted++;
+                }
+                if (emitted != 0 && r != Long.MAX_VALUE) {
+                    Operators.produced(REQUESTED, this, emitted);
+                }
+                missed = WIP.addAndGet(this, -missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Moves the pending sources having a head value to the heap, and drops the terminated ones.
+         *
+         * @return true if all the sources are either in the heap or terminated.
+         */
+        private boolean fillHeap() {
+            int i = 0;
+            while (i < pendingSize) {
+                int source = pending[i];
+                MergeInner<T> inner = inners[source];
+                boolean done = inner.done;
+                T head = inner.queue.peek();
+                if (head != null) {
+                    insert(source, timestampExtractor.applyAsLong(head));
+                } else if (!done) {
+                    i++;
+                    continue;
+                }
+                pending[i] = pending[--pendingSize];
+            }
+            return pendingSize == 0;
+        }
+
+        private void insert(int source, long time) {
+            int position = heapSize++;
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                if (!before(time, source, heapTimes[parent], heap[parent])) {
+                    break;
+                }
+                heap[position] = heap[parent];
+                heapTimes[position] = heapTimes[parent];
+                position = parent;
+            }
+            heap[position] = source;
+            heapTimes[position] = time;
+        }
+
+        private void removeTop() {
+            int lastSource = heap[--heapSize];
+            long lastTime = heapTimes[heapSize];
+            int position = 0;
+            int half = heapSize >>> 1;
+            while (position < half) {
+                int child = 2 * position + 1;
+                int right = child + 1;
+                if (right < heapSize && before(heapTimes[right], heap[right], heapTimes[child], heap[child])) {
+                    child = right;
+                }
+                if (!before(heapTimes[child], heap[child], lastTime, lastSource)) {
+                    break;
+                }
+                heap[position] = heap[child];
+                heapTimes[position] = heapTimes[child];
+                position = child;
+            }
+            if (heapSize > 0) {
+                heap[position] = lastSource;
+                heapTimes[position] = lastTime;
+            }
+        }
+
+        private static boolean before(long time, int source, long otherTime, int otherSource) {
+            return time < otherTime || (time == otherTime && source < otherSource);
+        }
+    }
+
+    private static final class MergeInner<T> implements CoreSubscriber<T> {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<MergeInner, Subscription> SUBSCRIPTION =
+                AtomicReferenceFieldUpdater.newUpdater(MergeInner.class, Subscription.class, "subscription");
+        private final MergeCoordinator<T> parent;
+        private final int prefetch;
+        private final int limit;
+        private final Queue<T> queue;
+        private volatile Subscription subscription;
+        private volatile boolean done;
+        private int consumed;
+
+        private MergeInner(MergeCoordinator<T> parent, int prefetch) {
+            this.parent = parent;
+            this.prefetch = prefetch;
+            this.limit = prefetch - (prefetch >> 2);
+            this.queue = Queues.<T>get(prefetch).get();
+        }
+
+        @Override
+        public void onSubscribe(@NonNull Subscription s) {
+            if (Operators.setOnce(SUBSCRIPTION, this, s)) {
+                s.request(prefetch);
+            }
+        }
+
+        @Override
+        public void onNext(T value) {
+            if (!queue.offer(value)) {
+                subscription.cancel();
+                onError(Exceptions.failWithOverflow("Queue is full: Reactive Streams source doesn't respect backpressure"));
+                return;
+            }
+            parent.drain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            done = true;
+            parent.onError(t);
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+            parent.drain();
+        }
+
+        private void consumed() {
+            if (++consumed == limit) {
+                consumed = 0;
+                subscription.request(limit);
+            }
+        }
+
+        private void cancel() {
+            Operators.terminate(SUBSCRIPTION, this);
+        }
+    }
+}
@@ -133,9 +133,11 @@ class AbstractChronicleStoreTest {
     }
 
     @Test
-    @DisplayName("tests that an exception thrown when reading from Chronicle is swallowed")
+    @DisplayName("tests that an exception thrown when reading from Chronicle is signalled to the subscriber")
     void testTailerException() {
         when(tailer.readBytes(any(ReadBytesMarshallable.class))).thenThrow(new RuntimeException("simulated")).thenReturn(true);
-        subscribeToValues();
+        StepVerifier.create(store.retrieveAll(true))
+                .expectErrorMessage("simulated")
+                .verify(Duration.ofMillis(500));
     }
 }
\ No newline at end of file
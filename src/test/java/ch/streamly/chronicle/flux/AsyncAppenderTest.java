@@ -0,0 +1,142 @@
+package ch.streamly.chronicle.flux;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.queue.ChronicleQueue;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import reactor.core.publisher.MonoProcessor;
+import reactor.test.StepVerifier;
+
+class AsyncAppenderTest {
+
+    private final CountDownLatch writeBlocked = new CountDownLatch(1);
+    private ChronicleQueue queue;
+    private ExcerptAppender excerptAppender;
+    private AsyncAppender<String> appender;
+
+    @BeforeEach
+    void setUp() {
+        queue = Mockito.mock(ChronicleQueue.class);
+        excerptAppender = Mockito.mock(ExcerptAppender.class);
+        File file = Mockito.mock(File.class);
+        when(queue.file()).thenReturn(file);
+        when(file.getAbsolutePath()).thenReturn("");
+        when(queue.acquireAppender()).thenReturn(excerptAppender);
+        doAnswer(invocation -> {
+            writeBlocked.await();
+            return null;
+        }).when(excerptAppender).writeBytes(any(Bytes.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        writeBlocked.countDown();
+        appender.dispose();
+    }
+
+    private AsyncAppender<String> newAppender(AppendOverflowPolicy policy) {
+        return new AsyncAppender<>(queue, (bytes, value) -> bytes.append8bit(value), 2, policy,
+                WaitStrategy.yielding(), () -> {
+        });
+    }
+
+    @Test
+    @DisplayName("tests that a value is dropped when the ring buffer is full")
+    void shouldDropWhenFull() {
+        appender = newAppender(AppendOverflowPolicy.DROP);
+        assertTrue(appender.append("one", null));
+        assertTrue(appender.append("two", null));
+        assertFalse(appender.append("three", null));
+    }
+
+    @Test
+    @DisplayName("tests that an exception is thrown when the ring buffer is full")
+    void shouldFailWhenFull() {
+        appender = newAppender(AppendOverflowPolicy.FAIL);
+        appender.append("one", null);
+        appender.append("two", null);
+        assertThrows(IllegalStateException.class, () -> appender.append("three", null));
+    }
+
+    @Test
+    @DisplayName("tests that the completion of a dropped value is an error")
+    void shouldSignalOverflowOnCompletion() {
+        appender = newAppender(AppendOverflowPolicy.DROP);
+        appender.append("one", null);
+        appender.append("two", null);
+        MonoProcessor<Void> completion = MonoProcessor.create();
+        appender.append("three", completion);
+        StepVerifier.create(completion)
+                .expectError(IllegalStateException.class)
+                .verify(Duration.ofMillis(500));
+    }
+
+    @Test
+    @DisplayName("tests that the completions are signaled once the values are written")
+    void shouldCompleteOnceWritten() {
+        appender = newAppender(AppendOverflowPolicy.BLOCK);
+        MonoProcessor<Void> completion = MonoProcessor.create();
+        appender.append("one", completion);
+        StepVerifier.create(appender.flush())
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(50))
+                .then(writeBlocked::countDown)
+                .expectComplete()
+                .verify(Duration.ofMillis(500));
+        assertTrue(completion.isSuccess());
+    }
+
+    @Test
+    @DisplayName("tests that the appender waits for the producers enqueuing a value before it releases the slots")
+    void shouldWriteValuesInFlightOnDispose() throws InterruptedException {
+        writeBlocked.countDown();
+        CountDownLatch serializing = new CountDownLatch(1);
+        CountDownLatch serialized = new CountDownLatch(1);
+        appender = new AsyncAppender<>(queue, (bytes, value) -> {
+            serializing.countDown();
+            await(serialized);
+            bytes.append8bit(value);
+        }, 2, AppendOverflowPolicy.BLOCK, WaitStrategy.yielding(), () -> {
+        });
+        MonoProcessor<Void> completion = MonoProcessor.create();
+        Thread producer = new Thread(() -> appender.append("one", completion));
+        producer.start();
+        serializing.await();
+        Thread disposer = new Thread(appender::dispose);
+        disposer.start();
+
+        disposer.join(50);
+        assertTrue(disposer.isAlive());
+        assertThrows(IllegalStateException.class, () -> appender.append("two", null));
+        serialized.countDown();
+        disposer.join(500);
+        assertFalse(disposer.isAlive());
+        assertTrue(completion.isSuccess());
+        verify(excerptAppender).writeBytes(any(Bytes.class));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
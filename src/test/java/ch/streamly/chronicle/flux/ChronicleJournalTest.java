@@ -4,8 +4,11 @@ import static ch.streamly.chronicle.flux.util.ChronicleStoreCleanup.deleteStoreI
 import static java.time.Duration.ofSeconds;
 
 import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
@@ -13,6 +16,16 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import com.google.common.primitives.Longs;
+
+import ch.streamly.chronicle.flux.metrics.LogHistogram;
+import ch.streamly.chronicle.flux.replay.ReplayController;
+import ch.streamly.domain.Timed;
+import ch.streamly.domain.TimedValue;
+import net.openhft.chronicle.core.time.SetTimeProvider;
+import net.openhft.chronicle.queue.RollCycles;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueue;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueueBuilder;
 import ch.streamly.domain.WrappedValue;
 import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
@@ -32,6 +45,7 @@ class ChronicleJournalTest {
     private static final long TIME_2 = 2000L;
     private static final long TIME_3 = 3000L;
     private static final long TIME_4 = 7000L;
+    private static final long BASE_TIME = 1_500_000_000_000L;
     private ChronicleJournal<DummyObject> journal;
     private String path;
 
@@ -74,6 +88,230 @@ class ChronicleJournalTest {
 
     }
 
+    @Test
+    @DisplayName("tests that the journal reads the records written with the legacy layout")
+    void shouldReadLegacyRecords() {
+        journal.close();
+        ChronicleStore<DummyObject> legacyJournal = new ChronicleStore<>(path,
+                v -> legacyRecord(TIME_1, v), b -> null);
+        legacyJournal.store(FIRST);
+        legacyJournal.close();
+        journal = new ChronicleJournal<DummyObject>(path, DummyObject::toBinary, DummyObject::fromBinary) {
+            @Override
+            long getCurrentTime() {
+                return TIME_2;
+            }
+        };
+        journal.store(SECOND);
+
+        StepVerifier.create(journal.retrieveHistory())
+                .expectSubscription()
+                .expectNext(new TimedValue<>(TIME_1, FIRST))
+                .expectNext(new TimedValue<>(TIME_2, SECOND))
+                .expectComplete()
+                .verify(Duration.ofMillis(500));
+    }
+
+    @Test
+    @DisplayName("tests that the latency of the subscribers is recorded with the nanosecond timestamps")
+    void shouldRecordLatencyWithNanoTimestamps() {
+        journal.close();
+        journal = ChronicleJournal.<DummyObject>newBuilder()
+                .path(path)
+                .serializer(DummyObject::toBinary)
+                .deserializer(DummyObject::fromBinary)
+                .nanoTimestamps()
+                .build();
+        LogHistogram latencyNanos = new LogHistogram();
+        long before = System.currentTimeMillis();
+
+        StepVerifier.create(journal.retrieveNewValues(latencyNanos).map(Timed::value))
+                .expectSubscription()
+                .then(() -> journal.store(FIRST))
+                .expectNext(FIRST)
+                .then(() -> journal.store(SECOND))
+                .expectNext(SECOND)
+                .thenCancel()
+                .verify(Duration.ofMillis(500));
+
+        LogHistogram.Snapshot snapshot = latencyNanos.snapshot();
+        Assertions.assertEquals(2, snapshot.count());
+        Assertions.assertTrue(snapshot.max() < Duration.ofMillis(500).toNanos(), snapshot.toString());
+        StepVerifier.create(journal.retrieveHistory().map(Timed::time))
+                .assertNext(time -> Assertions.assertTrue(time >= before - 1 && time <= System.currentTimeMillis() + 1))
+                .expectNextCount(1)
+                .expectComplete()
+                .verify(Duration.ofMillis(500));
+    }
+
+    @Test
+    @DisplayName("tests that the latency of the values timed in milliseconds is recorded by a durable consumer")
+    void shouldRecordLatencyWithMilliTimestamps() {
+        journal.close();
+        journal = new ChronicleJournal<DummyObject>(path, DummyObject::toBinary, DummyObject::fromBinary) {
+            @Override
+            long getCurrentTime() {
+                return TIME_1;
+            }
+
+            @Override
+            long getCurrentTimeNanos() {
+                return Duration.ofMillis(TIME_1).plusMillis(3).toNanos();
+            }
+        };
+        LogHistogram latencyNanos = new LogHistogram();
+        journal.store(FIRST);
+
+        StepVerifier.create(journal.retrieveAll("latency", latencyNanos))
+                .expectNext(new TimedValue<>(TIME_1, FIRST))
+                .thenCancel()
+                .verify(Duration.ofMillis(500));
+
+        Assertions.assertEquals(1, latencyNanos.snapshot().count());
+        Assertions.assertEquals(Duration.ofMillis(3).toNanos(), latencyNanos.snapshot().max());
+    }
+
+    @Test
+    @DisplayName("tests that the latency of the values of a batched excerpt is recorded when they are emitted")
+    void shouldRecordLatencyWhenEmitted() {
+        journal.close();
+        AtomicLong clock = new AtomicLong(Duration.ofMillis(TIME_1).toNanos());
+        journal = new ChronicleJournal<DummyObject>(ChronicleJournal.<DummyObject>newBuilder()
+                .path(path)
+                .serializer(DummyObject::toBinary)
+                .deserializer(DummyObject::fromBinary)
+                .nanoTimestamps()
+                .batching(2, Duration.ofSeconds(10), 1 << 16)) {
+            @Override
+            long getCurrentTimeNanos() {
+                return clock.get();
+            }
+        };
+        journal.store(Flux.just(FIRST, SECOND));
+        LogHistogram latencyNanos = new LogHistogram();
+
+        StepVerifier.create(journal.retrieveAll("latency", latencyNanos).map(Timed::value), 1)
+                .expectNext(FIRST)
+                .then(() -> clock.addAndGet(Duration.ofMillis(5).toNanos()))
+                .thenRequest(1)
+                .expectNext(SECOND)
+                .thenCancel()
+                .verify(Duration.ofMillis(500));
+
+        Assertions.assertEquals(2, latencyNanos.count());
+        Assertions.assertEquals(Duration.ofMillis(5).toNanos(), latencyNanos.snapshot().max());
+        Assertions.assertEquals(0, latencyNanos.negativeCount());
+    }
+
+    @Test
+    @DisplayName("tests that the values of a time range are retrieved across several roll cycles")
+    void shouldRetrieveTimeRange() {
+        ChronicleJournal<DummyObject> multiCycleJournal = storeOnePerQuarterSecond(40);
+
+        StepVerifier.create(multiCycleJournal.retrieveBetween(at(1100), at(2600)).map(Timed::time))
+                .expectNext(at(1250).toEpochMilli(), at(1500).toEpochMilli(), at(1750).toEpochMilli(),
+                        at(2000).toEpochMilli(), at(2250).toEpochMilli(), at(2500).toEpochMilli())
+                .expectComplete()
+                .verify(Duration.ofMillis(500));
+        StepVerifier.create(multiCycleJournal.retrieveBetween(at(0), at(600)).map(Timed::time))
+                .expectNext(at(0).toEpochMilli(), at(250).toEpochMilli(), at(500).toEpochMilli())
+                .expectComplete()
+                .verify(Duration.ofMillis(500));
+        StepVerifier.create(multiCycleJournal.retrieveBetween(at(-5000), at(9000)))
+                .expectNextCount(36)
+                .assertNext(v -> Assertions.assertEquals(at(9000).toEpochMilli(), v.time()))
+                .expectComplete()
+                .verify(Duration.ofMillis(500));
+        multiCycleJournal.close();
+    }
+
+    @Test
+    @DisplayName("tests that the values of a time range starting in the middle of a batched excerpt are retrieved")
+    void shouldRetrieveTimeRangeInBatchedExcerpt() {
+        journal.close();
+        ConcurrentLinkedQueue<Long> times = new ConcurrentLinkedQueue<>();
+        times.addAll(Arrays.asList(TIME_1, TIME_2, TIME_3, TIME_4, 8000L, 9000L));
+        journal = new ChronicleJournal<DummyObject>(ChronicleJournal.<DummyObject>newBuilder()
+                .path(path)
+                .serializer(DummyObject::toBinary)
+                .deserializer(DummyObject::fromBinary)
+                .batching(4, Duration.ofSeconds(10), 1 << 16)) {
+            @Override
+            long getCurrentTime() {
+                return times.poll();
+            }
+        };
+        journal.store(source);
+        journal.store(Flux.just(FIRST, SECOND));
+
+        StepVerifier.create(journal.retrieveBetween(Instant.ofEpochMilli(1500), Instant.ofEpochMilli(8000)).map(Timed::time))
+                .expectNext(TIME_2, TIME_3, TIME_4, 8000L)
+                .expectComplete()
+                .verify(Duration.ofMillis(500));
+        StepVerifier.create(journal.retrieveBetween(Instant.ofEpochMilli(8500), Instant.ofEpochMilli(20000)).map(Timed::time))
+                .expectNext(9000L)
+                .expectComplete()
+                .verify(Duration.ofMillis(500));
+    }
+
+    @Test
+    @DisplayName("tests that the values are retrieved from a given time, followed by the new values")
+    void shouldRetrieveFromTime() {
+        ChronicleJournal<DummyObject> multiCycleJournal = storeOnePerQuarterSecond(10);
+
+        StepVerifier.create(multiCycleJournal.retrieveFrom(at(2000)).map(Timed::time))
+                .expectNext(at(2000).toEpochMilli(), at(2250).toEpochMilli())
+                .then(() -> multiCycleJournal.store(FIRST))
+                .expectNext(at(2500).toEpochMilli())
+                .thenCancel()
+                .verify(Duration.ofMillis(500));
+        StepVerifier.create(multiCycleJournal.retrieveBetween(at(20000), at(30000)))
+                .expectComplete()
+                .verify(Duration.ofMillis(500));
+        multiCycleJournal.close();
+    }
+
+    private static Instant at(long offsetMillis) {
+        return Instant.ofEpochMilli(BASE_TIME + offsetMillis);
+    }
+
+    private ChronicleJournal<DummyObject> storeOnePerQuarterSecond(int count) {
+        journal.close();
+        deleteStoreIfItExists(path); // the roll cycle of an existing queue cannot be changed
+        SetTimeProvider timeProvider = new SetTimeProvider();
+        timeProvider.currentTimeMillis(BASE_TIME);
+        ChronicleJournal<DummyObject> multiCycleJournal = new ChronicleJournal<DummyObject>(path, DummyObject::toBinary,
+                DummyObject::fromBinary) {
+            @Override
+            SingleChronicleQueue createQueue(String path) {
+                return SingleChronicleQueueBuilder.binary(path)
+                        .rollCycle(RollCycles.TEST_SECONDLY)
+                        .timeProvider(timeProvider)
+                        .build();
+            }
+
+            @Override
+            long getCurrentTime() {
+                long time = timeProvider.currentTimeMillis();
+                timeProvider.advanceMillis(250);
+                return time;
+            }
+        };
+        for (int i = 0; i < count; i++) {
+            multiCycleJournal.store(FIRST);
+        }
+        journal = multiCycleJournal;
+        return multiCycleJournal;
+    }
+
+    private static byte[] legacyRecord(long time, DummyObject value) {
+        byte[] val = value.toBinary();
+        byte[] result = new byte[Long.BYTES + val.length];
+        System.arraycopy(Longs.toByteArray(time), 0, result, 0, Long.BYTES);
+        System.arraycopy(val, 0, result, Long.BYTES, val.length);
+        return result;
+    }
+
     private void verifyBasicOperations() {
         journal.store(source);
         StepVerifier.create(journal.retrieveAll())
@@ -111,4 +349,66 @@ class ChronicleJournalTest {
                 .verify(Duration.ofMillis(500));
     }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("tests that a controlled replay of the history seeks backward with the time index of the journal")
+    void shouldSeekReplayedHistory() {
+        journal.store(source);
+        ReplayController controller = new ReplayController();
+        StepVerifier.withVirtualTime(() -> journal.replayHistory().withController(controller).map(WrappedValue::value))
+                .expectSubscription()
+                .expectNext(FIRST)
+                .expectNoEvent(ofSeconds(1))
+                .expectNext(SECOND)
+                .then(() -> controller.seek(TIME_1))
+                .expectNext(FIRST)
+                .expectNoEvent(ofSeconds(1))
+                .expectNext(SECOND)
+                .then(() -> controller.seek(TIME_4))
+                .expectNext(FOURTH)
+                .thenCancel()
+                .verify(Duration.ofMillis(500));
+    }
+
+    @Test
+    @DisplayName("tests that the history of several journals is replayed in the order of the journal timestamps")
+    void shouldReplayMergedHistory() {
+        String otherPath = path + "-other";
+        ConcurrentLinkedQueue<Long> otherTimes = new ConcurrentLinkedQueue<>();
+        otherTimes.add(1500L);
+        otherTimes.add(2500L);
+        ChronicleJournal<DummyObject> otherJournal = new ChronicleJournal<DummyObject>(otherPath, DummyObject::toBinary,
+                DummyObject::fromBinary) {
+            @Override
+            long getCurrentTime() {
+                return otherTimes.poll();
+            }
+        };
+        try {
+            DummyObject otherFirst = new DummyObject(20000, "other one");
+            DummyObject otherSecond = new DummyObject(21000, "other two");
+            journal.store(source);
+            otherJournal.store(Flux.just(otherFirst, otherSecond));
+
+            StepVerifier.withVirtualTime(() -> FluxJournal.replayMergedHistory(journal, otherJournal)
+                    .withOriginalTiming()
+                    .map(WrappedValue::value))
+                    .expectSubscription()
+                    .expectNext(FIRST)
+                    .expectNoEvent(Duration.ofMillis(500))
+                    .expectNext(otherFirst)
+                    .expectNoEvent(Duration.ofMillis(500))
+                    .expectNext(SECOND)
+                    .expectNoEvent(Duration.ofMillis(500))
+                    .expectNext(otherSecond)
+                    .expectNoEvent(Duration.ofMillis(500))
+                    .expectNext(THIRD)
+                    .expectNoEvent(ofSeconds(4))
+                    .expectNext(FOURTH)
+                    .expectComplete()
+                    .verify(Duration.ofMillis(500));
+        } finally {
+            otherJournal.close();
+            deleteStoreIfItExists(otherPath);
+        }
+    }
+}
@@ -2,17 +2,40 @@ package ch.streamly.chronicle.flux;
 
 import static ch.streamly.chronicle.flux.util.ChronicleStoreCleanup.deleteStoreIfItExists;
 import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import ch.streamly.chronicle.flux.metrics.CountingStoreMetrics;
+import ch.streamly.chronicle.flux.metrics.StoreMetrics;
+import ch.streamly.chronicle.flux.metrics.StoreStats;
+import ch.streamly.chronicle.flux.metrics.SubscriberStats;
+import net.openhft.chronicle.bytes.BytesIn;
+import net.openhft.chronicle.bytes.BytesOut;
+import net.openhft.chronicle.core.time.SetTimeProvider;
 import net.openhft.chronicle.queue.RollCycles;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueue;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueueBuilder;
+import reactor.core.Disposable;
+import org.reactivestreams.Subscription;
+import reactor.core.Exceptions;
+import reactor.core.publisher.BaseSubscriber;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.ParallelFlux;
+import reactor.core.scheduler.Schedulers;
 import reactor.test.StepVerifier;
 
 
@@ -42,6 +65,24 @@ class ChronicleStoreTest {
             deleteStoreIfItExists(path);
         }
 
+    /**
+     * Closes the store of the test and replaces it with a store rolling every second, on the time of the provider.
+     */
+    private ChronicleStore<DummyObject> secondlyStore(SetTimeProvider timeProvider) {
+        store.close();
+        deleteStoreIfItExists(path);
+        timeProvider.currentTimeMillis(1_500_000_000_000L);
+        return new ChronicleStore<DummyObject>(path, DummyObject::toBinary, DummyObject::fromBinary) {
+            @Override
+            SingleChronicleQueue createQueue(String path) {
+                return SingleChronicleQueueBuilder.binary(path)
+                        .rollCycle(RollCycles.TEST_SECONDLY)
+                        .timeProvider(timeProvider)
+                        .build();
+            }
+        };
+    }
+
     @Test
     @DisplayName("tests that a data stream is store in the Chronicle store")
     void shouldStoreStream() {
@@ -60,6 +101,167 @@ class ChronicleStoreTest {
         testBasicOperations();
     }
 
+    @Test
+    @DisplayName("tests that a marshaller can read the values written by byte array serializers")
+    void shouldReadWithMarshaller() {
+        store.store(source);
+        store.close();
+        store = ChronicleStore.<DummyObject>newBuilder()
+                .path(path)
+                .marshaller(new DummyObjectMarshaller())
+                .build();
+
+        StepVerifier.create(store.retrieveHistory())
+                .expectNext(FIRST, SECOND, THIRD, FOURTH)
+                .expectComplete()
+                .verify(Duration.ofMillis(500));
+    }
+
+    @Test
+    @DisplayName("tests that values written by a marshaller can be read by byte array deserializers")
+    void shouldWriteWithMarshaller() {
+        store.close();
+        store = ChronicleStore.<DummyObject>newBuilder()
+                .path(path)
+                .marshaller(new DummyObjectMarshaller())
+                .build();
+        store.store(FIRST);
+        store.store(SECOND);
+        store.close();
+        store = new ChronicleStore<>(path, DummyObject::toBinary, DummyObject::fromBinary);
+
+        StepVerifier.create(store.retrieveHistory())
+                .expectNext(FIRST, SECOND)
+                .expectComplete()
+                .verify(Duration.ofMillis(500));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    @DisplayName("tests that the deprecated serializer and deserializer of the store delegate to the marshaller")
+    void shouldKeepDeprecatedSerialization() {
+        store.close();
+        store = ChronicleStore.<DummyObject>newBuilder()
+                .path(path)
+                .marshaller(new DummyObjectMarshaller())
+                .build();
+        byte[] bytes = store.serializeValue(FIRST);
+
+        assertArrayEquals(FIRST.toBinary(), bytes);
+        assertEquals(FIRST, store.deserializer.apply(bytes));
+    }
+
+    @Test
+    @DisplayName("tests that batched values are unpacked by the readers, according to the downstream demand")
+    void shouldStoreBatches() {
+        store.close();
+        store = ChronicleStore.<DummyObject>newBuilder()
+                .path(path)
+                .serializer(DummyObject::toBinary)
+                .deserializer(DummyObject::fromBinary)
+                .batching(3, Duration.ofMillis(10), 1024)
+                .build();
+        store.store(FIRST);
+        store.store(source).dispose();
+
+        StepVerifier.create(store.retrieveHistory(), 1)
+                .expectNext(FIRST)
+                .thenRequest(2)
+                .expectNext(FIRST, SECOND)
+                .expectNoEvent(Duration.ofMillis(50))
+                .thenRequest(3)
+                .expectNext(THIRD, FOURTH)
+                .expectComplete()
+                .verify(Duration.ofMillis(500));
+    }
+
+    @Test
+    @DisplayName("tests that the padding added by the queue after a value is not read as another value")
+    void shouldIgnoreExcerptPadding() {
+        SetTimeProvider timeProvider = new SetTimeProvider();
+        store = secondlyStore(timeProvider);
+        List<DummyObject> values = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            DummyObject value = new DummyObject(i, "value" + (10 + i));
+            values.add(value);
+            store.store(value);
+            timeProvider.advanceMillis(i % 2 == 0 ? 0 : 1000); // the last excerpt of a cycle is padded
+        }
+
+        StepVerifier.create(store.retrieveHistory())
+                .expectNextSequence(values)
+                .expectComplete()
+                .verify(Duration.ofMillis(500));
+    }
+
+    @Test
+    @DisplayName("tests that a batch is split in several excerpts when it exceeds the maximum size in bytes")
+    void shouldSplitBatchesExceedingMaxBytes() {
+        store.close();
+        store = ChronicleStore.<DummyObject>newBuilder()
+                .path(path)
+                .serializer(DummyObject::toBinary)
+                .deserializer(DummyObject::fromBinary)
+                .batching(10, Duration.ofSeconds(10), 1)
+                .build();
+        store.store(source);
+
+        StepVerifier.create(store.retrieveHistory())
+                .expectNext(FIRST, SECOND, THIRD, FOURTH)
+                .expectComplete()
+                .verify(Duration.ofMillis(500));
+    }
+
+    @Test
+    @DisplayName("tests that the items stored concurrently through the asynchronous appender are all written")
+    void shouldStoreWithAsyncAppender() {
+        store.close();
+        store = ChronicleStore.<DummyObject>newBuilder()
+                .path(path)
+                .serializer(DummyObject::toBinary)
+                .deserializer(DummyObject::fromBinary)
+                .asyncAppender(16, AppendOverflowPolicy.BLOCK)
+                .build();
+        int producers = 4;
+        int itemsPerProducer = 1000;
+        Flux.range(0, producers)
+                .parallel(producers)
+                .runOn(Schedulers.parallel())
+                .doOnNext(p -> {
+                    for (int i = 0; i < itemsPerProducer; i++) {
+                        store.store(new DummyObject(i, p + "-" + i));
+                    }
+                })
+                .sequential()
+                .blockLast();
+        store.storeAsync(FIRST).block(Duration.ofSeconds(1));
+        store.flush().block(Duration.ofSeconds(1));
+
+        StepVerifier.create(store.retrieveHistory())
+                .expectNextCount(producers * itemsPerProducer)
+                .expectNext(FIRST)
+                .expectComplete()
+                .verify(Duration.ofSeconds(2));
+    }
+
+    private static class DummyObjectMarshaller implements ValueMarshaller<DummyObject> {
+        @Override
+        public void write(BytesOut<?> out, DummyObject value) {
+            out.writeLong(Long.reverseBytes(value.timestamp()));
+            out.append8bit(value.value());
+        }
+
+        @Override
+        public DummyObject read(BytesIn<?> in) {
+            long timestamp = Long.reverseBytes(in.readLong());
+            StringBuilder value = new StringBuilder();
+            while (in.readRemaining() > 0) {
+                value.append((char) in.readUnsignedByte());
+            }
+            return new DummyObject(timestamp, value.toString());
+        }
+    }
+
     private void testBasicOperations() {
         store.store(source);
         StepVerifier.create(store.retrieveAll())
@@ -103,6 +305,339 @@ class ChronicleStoreTest {
                 .verify(Duration.ofMillis(500));
     }
 
+    @Test
+    @DisplayName("tests that values are retrieved by index")
+    void shouldRetrieveByIndex() {
+        store.store(source);
+        List<IndexedValue<DummyObject>> history = store.retrieveRange(0, Long.MAX_VALUE).collectList().block();
+        assertEquals(4, history.size());
+        long secondIndex = history.get(1).index();
+        long fourthIndex = history.get(3).index();
+
+        StepVerifier.create(store.retrieve(secondIndex))
+                .expectNext(new IndexedValue<>(secondIndex, SECOND))
+                .expectComplete()
+                .verify(Duration.ofMillis(500));
+        StepVerifier.create(store.retrieveRange(secondIndex, fourthIndex).map(IndexedValue::value))
+                .expectNext(SECOND, THIRD)
+                .expectComplete()
+                .verify(Duration.ofMillis(500));
+        StepVerifier.create(store.retrieve(fourthIndex + 1))
+                .expectComplete()
+                .verify(Duration.ofMillis(500));
+    }
+
+    @Test
+    @DisplayName("tests that the last values are retrieved across several roll cycles")
+    void shouldRetrieveLastValues() {
+        SetTimeProvider timeProvider = new SetTimeProvider();
+        store = secondlyStore(timeProvider);
+        store.store(FIRST);
+        store.store(SECOND);
+        timeProvider.advanceMillis(1000);
+        store.store(THIRD);
+        timeProvider.advanceMillis(2000);
+        store.store(FOURTH);
+
+        StepVerifier.create(store.retrieveLast(3).map(IndexedValue::value))
+                .expectNext(SECOND, THIRD, FOURTH)
+                .expectComplete()
+                .verify(Duration.ofMillis(500));
+        StepVerifier.create(store.retrieveLast(10).map(IndexedValue::value))
+                .expectNext(FIRST, SECOND, THIRD, FOURTH)
+                .expectComplete()
+                .verify(Duration.ofMillis(500));
+        long thirdIndex = store.retrieveLast(2).blockFirst().index();
+        StepVerifier.create(store.retrieveRange(thirdIndex + 1, Long.MAX_VALUE).map(IndexedValue::value))
+                .expectNext(FOURTH)
+                .expectComplete()
+                .verify(Duration.ofMillis(500));
+    }
+
+    @Test
+    @DisplayName("tests that the history is read in parallel over several cycles, and merged back in order")
+    void shouldRetrieveHistoryInParallel() {
+        SetTimeProvider timeProvider = new SetTimeProvider();
+        store = secondlyStore(timeProvider);
+        List<DummyObject> values = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            DummyObject value = new DummyObject(i, "value" + i);
+            values.add(value);
+            store.store(value);
+            timeProvider.advanceMillis(i % 2 == 0 ? 0 : 1000);
+        }
+
+        ParallelFlux<DummyObject> parallel = store.retrieveHistoryParallel(3);
+        List<DummyObject> parallelHistory = parallel
+                .sequential()
+                .collectSortedList(Comparator.comparingLong(DummyObject::timestamp))
+                .block(ofSeconds(1));
+        assertEquals(values, parallelHistory);
+        StepVerifier.create(store.retrieveHistoryParallelOrdered(3, 2))
+                .expectNextSequence(values)
+                .expectComplete()
+                .verify(Duration.ofSeconds(1));
+        StepVerifier.create(store.retrieveHistoryParallel(20).sequential().count())
+                .expectNext(10L)
+                .expectComplete()
+                .verify(Duration.ofSeconds(1));
+        for (int i = 10; i < 30; i++) {
+            store.store(new DummyObject(i, "value" + i));
+            timeProvider.advanceMillis(i % 2 == 0 ? 0 : 1000);
+        }
+        // the cycles are split again for the new subscription
+        List<Long> railCounts = parallel.reduce(() -> 0L, (count, value) -> count + 1).sequential().collectList()
+                .block(ofSeconds(1));
+        assertEquals(30L, railCounts.stream().mapToLong(Long::longValue).sum());
+        assertTrue(railCounts.stream().allMatch(count -> count <= 10), railCounts.toString());
+    }
+
+    @Test
+    @DisplayName("tests that the metrics and the statistics of the subscribers are reported")
+    void shouldReportStats() throws InterruptedException {
+        store.close();
+        deleteStoreIfItExists(path);
+        CountingStoreMetrics metrics = StoreMetrics.counting();
+        store = ChronicleStore.<DummyObject>newBuilder()
+                .path(path)
+                .serializer(DummyObject::toBinary)
+                .deserializer(DummyObject::fromBinary)
+                .metrics(metrics)
+                .build();
+        source.subscribe(store::store);
+        StepVerifier.create(store.retrieveHistory())
+                .expectNextCount(4)
+                .expectComplete()
+                .verify(Duration.ofMillis(500));
+
+        BaseSubscriber<DummyObject> consumer = new BaseSubscriber<DummyObject>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(1);
+            }
+        };
+        store.retrieveAll("consumer").subscribe(consumer);
+        StoreStats stats = store.stats();
+        long deadline = System.currentTimeMillis() + 1000;
+        while ((stats.subscribers().isEmpty() || stats.subscribers().get(0).emitted() == 0)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            stats = store.stats();
+        }
+        stats = store.stats(); // the counters of the previous snapshot are taken before the subscribers
+        consumer.dispose();
+
+        assertEquals(4, stats.appends());
+        assertTrue(stats.bytesWritten() > 0);
+        assertEquals(5, stats.reads());
+        assertEquals(4, stats.serializeNanos().count());
+        assertEquals(5, stats.deserializeNanos().count());
+        assertEquals(1, stats.subscribers().size());
+        SubscriberStats consumerStats = stats.subscribers().get(0);
+        assertEquals("consumer", consumerStats.name());
+        assertEquals(1, consumerStats.emitted());
+        assertEquals(3, consumerStats.lag());
+    }
+
+    @Test
+    @DisplayName("tests that a named consumer resumes from its last position after a restart")
+    void shouldResumeNamedConsumer() throws InterruptedException {
+        store.store(FIRST);
+        store.store(SECOND);
+        StepVerifier.create(store.retrieveAll("consumer"))
+                .expectNext(FIRST, SECOND)
+                .thenCancel()
+                .verify(Duration.ofMillis(500));
+        awaitNoSubscriber(); // the position is not saved once the store is closed
+
+        store.close();
+        store = new ChronicleStore<>(path, DummyObject::toBinary, DummyObject::fromBinary);
+        store.store(THIRD);
+
+        StepVerifier.create(store.retrieveAll("consumer"))
+                .expectNext(THIRD)
+                .then(() -> store.store(FOURTH))
+                .expectNext(FOURTH)
+                .thenCancel()
+                .verify(Duration.ofMillis(500));
+        StepVerifier.create(store.retrieveAll("otherConsumer"))
+                .expectNext(FIRST, SECOND, THIRD, FOURTH)
+                .thenCancel()
+                .verify(Duration.ofMillis(500));
+    }
+
+    @Test
+    @DisplayName("tests that a named consumer resumes after its last acknowledged value after a restart")
+    void shouldResumeAfterAcknowledgedValue() throws InterruptedException {
+        store.store(FIRST);
+        store.store(SECOND);
+        store.store(THIRD);
+        List<AcknowledgeableValue<DummyObject>> notAcknowledged = new ArrayList<>();
+        StepVerifier.create(store.retrieveAllWithAcks("consumer"))
+                .assertNext(v -> {
+                    assertEquals(FIRST, v.value());
+                    v.acknowledge();
+                })
+                .consumeNextWith(notAcknowledged::add)
+                .consumeNextWith(notAcknowledged::add)
+                .thenCancel()
+                .verify(Duration.ofMillis(500));
+        awaitNoSubscriber();
+
+        store.close();
+        notAcknowledged.get(1).acknowledge(); // ignored once the subscription is terminated
+        store = new ChronicleStore<>(path, DummyObject::toBinary, DummyObject::fromBinary);
+
+        StepVerifier.create(store.retrieveAllWithAcks("consumer").map(AcknowledgeableValue::value))
+                .expectNext(SECOND, THIRD)
+                .thenCancel()
+                .verify(Duration.ofMillis(500));
+    }
+
+    private void awaitNoSubscriber() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (!store.stats().subscribers().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    @DisplayName("tests that an error while reading the values is signalled to the subscriber")
+    void shouldSignalReadError() {
+        store.store(FIRST);
+        ChronicleStore<DummyObject> failingStore = new ChronicleStore<>(path, DummyObject::toBinary, bytes -> {
+            throw new IllegalStateException("corrupted value");
+        });
+        try {
+            StepVerifier.create(failingStore.retrieveAll())
+                    .expectErrorMessage("corrupted value")
+                    .verify(Duration.ofMillis(500));
+        } finally {
+            failingStore.close();
+        }
+    }
+
+    @Test
+    @DisplayName("tests that a named consumer cannot be subscribed twice at the same time")
+    void shouldRejectConcurrentNamedConsumer() {
+        Disposable subscription = store.retrieveAll("consumer").subscribe();
+
+        StepVerifier.create(store.retrieveAll("consumer"))
+                .expectError(IllegalStateException.class)
+                .verify(Duration.ofMillis(500));
+        subscription.dispose();
+    }
+
+    @Test
+    @DisplayName("tests that the new values are shared by several subscribers")
+    void shouldShareNewValues() {
+        store.store(FIRST);
+        List<DummyObject> otherValues = new CopyOnWriteArrayList<>();
+        Disposable otherSubscriber = store.retrieveSharedNewValues().subscribe(otherValues::add);
+
+        StepVerifier.create(store.retrieveSharedNewValues())
+                .then(() -> store.store(SECOND))
+                .expectNext(SECOND)
+                .then(() -> store.store(THIRD))
+                .expectNext(THIRD)
+                .thenCancel()
+                .verify(Duration.ofMillis(500));
+        assertEquals(Arrays.asList(SECOND, THIRD), otherValues);
+        otherSubscriber.dispose();
+    }
+
+    @Test
+    @DisplayName("tests that a slow subscriber of the shared new values receives an error when its buffer is full")
+    void shouldFailSlowSharedSubscriber() {
+        StepVerifier.create(store.retrieveSharedNewValues(SlowSubscriberPolicy.BUFFER, 2), 0)
+                .then(() -> store.store(source))
+                .expectErrorMatches(Exceptions::isOverflow)
+                .verify(Duration.ofMillis(500));
+    }
+
+    @Test
+    @DisplayName("tests that a slow subscriber of the shared new values only receives the latest value")
+    void shouldConflateSharedNewValues() {
+        StepVerifier.create(store.retrieveSharedNewValues(SlowSubscriberPolicy.CONFLATE, 1), 0)
+                .then(() -> store.store(source))
+                .expectNoEvent(Duration.ofMillis(100))
+                .thenRequest(1)
+                .expectNext(FOURTH)
+                .thenCancel()
+                .verify(Duration.ofMillis(500));
+    }
+
+    @Test
+    @DisplayName("tests that a slow subscriber of the shared new values catches up with its own reader")
+    void shouldDetachSlowSharedSubscriber() {
+        StepVerifier.create(store.retrieveSharedNewValues(SlowSubscriberPolicy.DETACH, 2), 0)
+                .then(() -> store.store(source))
+                .expectNoEvent(Duration.ofMillis(100))
+                .thenRequest(10)
+                .expectNext(FIRST, SECOND, THIRD, FOURTH)
+                .then(() -> store.store(FIRST))
+                .expectNext(FIRST)
+                .thenCancel()
+                .verify(Duration.ofMillis(500));
+    }
+
+    @Test
+    @DisplayName("tests that a read error is signalled to the shared subscribers and that the next subscriber reconnects")
+    void shouldSignalSharedReadError() {
+        store.close();
+        store = ChronicleStore.<DummyObject>newBuilder()
+                .path(path)
+                .serializer(DummyObject::toBinary)
+                .deserializer(bytes -> {
+                    DummyObject value = DummyObject.fromBinary(bytes);
+                    if (value.equals(FIRST)) {
+                        throw new IllegalArgumentException("cannot read " + value);
+                    }
+                    return value;
+                })
+                .build();
+        StepVerifier.create(store.retrieveSharedNewValues())
+                .then(() -> store.store(FIRST))
+                .expectError(IllegalArgumentException.class)
+                .verify(Duration.ofMillis(500));
+
+        StepVerifier.create(store.retrieveSharedNewValues())
+                .then(() -> store.store(SECOND))
+                .expectNext(SECOND)
+                .thenCancel()
+                .verify(Duration.ofMillis(500));
+    }
+
+    @Test
+    @DisplayName("tests that the shared subscribers receive an error when the store is closed")
+    void shouldSignalCloseToSharedSubscribers() {
+        StepVerifier.create(store.retrieveSharedNewValues())
+                .then(() -> store.store(FIRST))
+                .expectNext(FIRST)
+                .then(store::close)
+                .expectError(IllegalStateException.class)
+                .verify(Duration.ofMillis(500));
+    }
+
+    @Test
+    @DisplayName("tests that the history is emitted according to the downstream demand")
+    void shouldRespectBackpressure() {
+        store.store(source);
+
+        StepVerifier.create(store.retrieveHistory(), 2)
+                .expectSubscription()
+                .expectNext(FIRST)
+                .expectNext(SECOND)
+                .expectNoEvent(Duration.ofMillis(50))
+                .thenRequest(1)
+                .expectNext(THIRD)
+                .expectNoEvent(Duration.ofMillis(50))
+                .thenRequest(10)
+                .expectNext(FOURTH)
+                .expectComplete()
+                .verify(Duration.ofMillis(500));
+    }
+
     @Test
     @DisplayName("tests that new values are retrieved from the Chronicle store")
     void retrieveNewValues() {
@@ -118,6 +653,42 @@ class ChronicleStoreTest {
                 .verify(Duration.ofMillis(500));
     }
 
+    @Test
+    @DisplayName("tests that new values are retrieved with a busy spin wait strategy")
+    void retrieveNewValuesWithBusySpin() {
+        store = storeWithWaitStrategy(WaitStrategy.busySpin());
+        verifyNewValuesAreRetrieved();
+    }
+
+    @Test
+    @DisplayName("tests that a blocking reader is woken up when a value is stored")
+    void retrieveNewValuesWithBlockingWaitStrategy() {
+        store = storeWithWaitStrategy(WaitStrategy.blocking(Duration.ofSeconds(10)));
+        verifyNewValuesAreRetrieved();
+    }
+
+    private ChronicleStore<DummyObject> storeWithWaitStrategy(WaitStrategy waitStrategy) {
+        store.close();
+        return ChronicleStore.<DummyObject>newBuilder()
+                .path(path)
+                .serializer(DummyObject::toBinary)
+                .deserializer(DummyObject::fromBinary)
+                .waitStrategy(waitStrategy)
+                .build();
+    }
+
+    private void verifyNewValuesAreRetrieved() {
+        store.store(FIRST);
+        StepVerifier.create(store.retrieveNewValues())
+                .expectSubscription()
+                .then(() -> store.store(SECOND))
+                .expectNext(SECOND)
+                .then(() -> store.store(THIRD))
+                .expectNext(THIRD)
+                .thenCancel()
+                .verify(Duration.ofMillis(500));
+    }
+
     @Test
     @DisplayName("tests that the Chronicle store can replay history")
     void replayHistory() {
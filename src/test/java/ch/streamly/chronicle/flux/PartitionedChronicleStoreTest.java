@@ -0,0 +1,111 @@
+package ch.streamly.chronicle.flux;
+
+import static ch.streamly.chronicle.flux.util.ChronicleStoreCleanup.deleteStoreIfItExists;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+class PartitionedChronicleStoreTest {
+    private static final String PREFIX = "PartitionedChronicleStoreTest";
+    private static final DummyObject FIRST = new DummyObject(10000, "one");
+    private static final DummyObject SECOND = new DummyObject(11000, "two");
+    private static final DummyObject THIRD = new DummyObject(12000, "three");
+    private static final DummyObject FOURTH = new DummyObject(15000, "four");
+    private static final DummyObject FIFTH = new DummyObject(16000, "five");
+    private PartitionedChronicleStore<DummyObject> store;
+    private String path;
+
+    @BeforeEach
+    void setUp() {
+        path = PREFIX + UUID.randomUUID().toString();
+        store = PartitionedChronicleStore.<DummyObject>newBuilder()
+                .path(path)
+                .partitions(3, DummyObject::value)
+                .partitionStore(ChronicleStore.<DummyObject>newBuilder()
+                        .serializer(DummyObject::toBinary)
+                        .deserializer(DummyObject::fromBinary))
+                .orderBy(DummyObject::timestamp)
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+        deleteStoreIfItExists(path);
+    }
+
+    @Test
+    @DisplayName("tests that the history of all the partitions is merged in order")
+    void shouldRetrieveOrderedHistory() {
+        Flux.just(FIRST, SECOND, THIRD, FOURTH, FIFTH).subscribe(store::store);
+
+        StepVerifier.create(store.retrieveHistory())
+                .expectNext(FIRST, SECOND, THIRD, FOURTH, FIFTH)
+                .expectComplete()
+                .verify(Duration.ofMillis(500));
+    }
+
+    @Test
+    @DisplayName("tests that the values are stored in the partition of their key")
+    void shouldRetrieveHistoryByPartition() {
+        Flux.just(FIRST, SECOND, THIRD, FOURTH, FIFTH).subscribe(store::store);
+
+        List<List<DummyObject>> rails = store.retrieveHistoryByPartition()
+                .groups()
+                .flatMap(Flux::collectList)
+                .collectList()
+                .block(Duration.ofSeconds(1));
+
+        assertEquals(3, rails.size());
+        assertEquals(5, rails.stream().mapToInt(List::size).sum());
+        for (int i = 0; i < store.partitionCount(); i++) {
+            for (DummyObject value : store.partition(i).retrieveHistory().toIterable()) {
+                assertEquals(i, Math.floorMod(value.value().hashCode(), 3));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("tests that a data stream is stored in the partitions")
+    void shouldStoreStream() {
+        Disposable storage = store.store(Flux.just(FIRST, SECOND, THIRD, FOURTH, FIFTH));
+
+        StepVerifier.create(store.retrieveAll().take(5).collectSortedList((a, b) -> Long.compare(a.timestamp(), b.timestamp())))
+                .expectNext(Arrays.asList(FIRST, SECOND, THIRD, FOURTH, FIFTH))
+                .expectComplete()
+                .verify(Duration.ofSeconds(1));
+        storage.dispose();
+    }
+
+    @Test
+    @DisplayName("tests that the last values of all the partitions are retrieved in order")
+    void shouldRetrieveLastValues() {
+        Flux.just(FIRST, SECOND, THIRD, FOURTH, FIFTH).subscribe(store::store);
+
+        StepVerifier.create(store.retrieveLast(2).map(IndexedValue::value))
+                .expectNext(FOURTH, FIFTH)
+                .expectComplete()
+                .verify(Duration.ofMillis(500));
+    }
+
+    @Test
+    @DisplayName("tests that the values without partition key are rejected")
+    void shouldRejectMissingPartitionKey() {
+        assertThrows(IllegalArgumentException.class, () -> PartitionedChronicleStore.<DummyObject>newBuilder()
+                .partitions(3, null));
+        assertThrows(IllegalArgumentException.class, () -> store.store(new DummyObject(10000, null)));
+    }
+}
@@ -0,0 +1,149 @@
+package ch.streamly.chronicle.flux;
+
+import static ch.streamly.chronicle.flux.util.ChronicleStoreCleanup.deleteStoreIfItExists;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ch.streamly.chronicle.flux.TailerSubscription.PositionListener;
+import net.openhft.chronicle.core.time.SetTimeProvider;
+import net.openhft.chronicle.queue.RollCycles;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueue;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueueBuilder;
+import reactor.test.StepVerifier;
+
+class RetentionManagerTest {
+    private static final String PREFIX = "RetentionManagerTest";
+    private static final DummyObject FIRST = new DummyObject(10000, "one");
+    private static final DummyObject SECOND = new DummyObject(11000, "two");
+    private static final DummyObject THIRD = new DummyObject(12000, "three");
+    private static final DummyObject FOURTH = new DummyObject(15000, "four");
+    private ChronicleStore<DummyObject> store;
+    private ActiveReaders readers;
+    private List<Long> indices;
+    private String path;
+
+    @BeforeEach
+    void setUp() {
+        path = PREFIX + UUID.randomUUID().toString();
+        SetTimeProvider timeProvider = new SetTimeProvider();
+        timeProvider.currentTimeMillis(1_500_000_000_000L);
+        ChronicleStore.ChronicleStoreBuilder<DummyObject> builder = ChronicleStore.<DummyObject>newBuilder()
+                .path(path)
+                .serializer(DummyObject::toBinary)
+                .deserializer(DummyObject::fromBinary)
+                .rollCycle(RollCycles.TEST_SECONDLY);
+        store = new ChronicleStore<DummyObject>(builder) {
+            @Override
+            SingleChronicleQueue createQueue(String path) {
+                return SingleChronicleQueueBuilder.binary(path)
+                        .rollCycle(RollCycles.TEST_SECONDLY)
+                        .timeProvider(timeProvider)
+                        .build();
+            }
+        };
+        for (DummyObject value : new DummyObject[]{FIRST, SECOND, THIRD, FOURTH}) {
+            store.store(value);
+            timeProvider.advanceMillis(1000);
+        }
+        indices = new ArrayList<>();
+        store.retrieveRange(0, Long.MAX_VALUE).map(IndexedValue::index).doOnNext(indices::add).blockLast();
+        readers = new ActiveReaders();
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+        deleteStoreIfItExists(path);
+    }
+
+    private RetentionManager retention(RetentionPolicy.RetentionPolicyBuilder policy) {
+        return new RetentionManager(store.queue(), RollCycles.TEST_SECONDLY, readers, store::cycles,
+                policy.checkInterval(Duration.ofHours(1)).build());
+    }
+
+    @Test
+    @DisplayName("tests that the oldest cycles are deleted when there are too many cycles")
+    void shouldDeleteExcessCycles() {
+        retention(RetentionPolicy.newBuilder().maxCycles(2)).applyPolicy();
+
+        assertEquals(2, store.cycles().size());
+        StepVerifier.create(store.retrieveHistory())
+                .expectNext(THIRD, FOURTH)
+                .expectComplete()
+                .verify(Duration.ofMillis(500));
+    }
+
+    @Test
+    @DisplayName("tests that the oldest cycles are deleted when the files are too large, except the last one")
+    void shouldDeleteCyclesExceedingMaxBytes() {
+        retention(RetentionPolicy.newBuilder().maxBytes(0)).applyPolicy();
+
+        assertEquals(1, store.cycles().size());
+    }
+
+    @Test
+    @DisplayName("tests that the size of a cycle is the size of its data, not of its pre-allocated file")
+    void shouldMeasureWrittenBytes() {
+        retention(RetentionPolicy.newBuilder().maxBytes(10_000_000)).applyPolicy();
+
+        assertEquals(4, store.cycles().size());
+    }
+
+    @Test
+    @DisplayName("tests that the cycles read by all the named consumers are deleted")
+    void shouldDeleteConsumedCycles() {
+        ConsumerCheckpoint checkpoint = new ConsumerCheckpoint(store.queue().file(), "consumer");
+        checkpoint.onPosition(indices.get(2));
+        checkpoint.close();
+
+        retention(RetentionPolicy.newBuilder().deleteConsumedCycles()).applyPolicy();
+
+        StepVerifier.create(store.retrieveHistory())
+                .expectNext(THIRD, FOURTH)
+                .expectComplete()
+                .verify(Duration.ofMillis(500));
+    }
+
+    @Test
+    @DisplayName("tests that a cycle is not deleted while an active reader can read it")
+    void shouldNotDeleteCyclesBeingRead() {
+        RetentionManager retention = retention(RetentionPolicy.newBuilder().maxCycles(1));
+        PositionListener reader = readers.register(PositionListener.NONE);
+        reader.onPosition(indices.get(1));
+
+        retention.applyPolicy();
+        assertEquals(3, store.cycles().size());
+
+        reader.onTerminate();
+        retention.applyPolicy();
+        assertEquals(1, store.cycles().size());
+    }
+
+    @Test
+    @DisplayName("tests that a postponed deletion is retried once the cycle is not read anymore")
+    void shouldRetryPostponedDeletion() throws InterruptedException {
+        RetentionManager retention = retention(RetentionPolicy.newBuilder().maxCycles(1));
+        PositionListener reader = readers.register(PositionListener.NONE);
+        reader.onPosition(indices.get(1));
+
+        retention.applyPolicy();
+        assertEquals(3, store.cycles().size());
+
+        reader.onTerminate();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (store.cycles().size() > 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(1, store.cycles().size());
+        retention.dispose();
+    }
+}
@@ -0,0 +1,168 @@
+package ch.streamly.chronicle.flux;
+
+import static ch.streamly.chronicle.flux.util.ChronicleStoreCleanup.deleteStoreIfItExists;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Hooks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+class TailerRuntimeTest {
+    private static final String PREFIX = "TailerRuntimeTest";
+    private static final DummyObject FIRST = new DummyObject(10000, "one");
+    private static final DummyObject SECOND = new DummyObject(11000, "two");
+    private static final int SUBSCRIBERS = 50;
+    private TailerRuntime runtime;
+    private ChronicleStore<DummyObject> store;
+    private String path;
+
+    @BeforeEach
+    void setUp() {
+        path = PREFIX + UUID.randomUUID().toString();
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+        runtime.dispose();
+        deleteStoreIfItExists(path);
+    }
+
+    private ChronicleStore<DummyObject> newStore(TailerRuntime runtime) {
+        return ChronicleStore.<DummyObject>newBuilder()
+                .path(path)
+                .serializer(DummyObject::toBinary)
+                .deserializer(DummyObject::fromBinary)
+                .tailerRuntime(runtime)
+                .build();
+    }
+
+    @Test
+    @DisplayName("tests that many subscriptions are served by a fixed number of reader threads")
+    void shouldServeManySubscribersWithFewThreads() {
+        runtime = TailerRuntime.newRuntime(2, WaitStrategy.yielding());
+        store = newStore(runtime);
+        store.store(FIRST);
+        store.store(SECOND);
+
+        List<List<DummyObject>> results = Flux.range(0, SUBSCRIBERS)
+                .flatMap(i -> store.retrieveHistory().collectList())
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(SUBSCRIBERS, results.size());
+        results.forEach(values -> assertEquals(2, values.size()));
+        long readerThreads = Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.getName().startsWith(runtime.name() + "-"))
+                .count();
+        assertEquals(2, readerThreads);
+    }
+
+    @Test
+    @DisplayName("tests that the runtime can run on a user supplied scheduler")
+    void shouldRunOnScheduler() {
+        Scheduler scheduler = Schedulers.newParallel(PREFIX, 1, true);
+        runtime = TailerRuntime.fromScheduler(scheduler, 1, WaitStrategy.backoff(10, 10, Duration.ofMillis(1)));
+        store = newStore(runtime);
+        store.store(FIRST);
+
+        StepVerifier.create(store.retrieveAll())
+                .expectNext(FIRST)
+                .then(() -> store.store(SECOND))
+                .expectNext(SECOND)
+                .thenCancel()
+                .verify(Duration.ofMillis(500));
+        runtime.dispose();
+        scheduler.dispose();
+    }
+
+    @Test
+    @DisplayName("tests that a disposed runtime rejects new subscriptions")
+    void shouldRejectTasksOnceDisposed() {
+        runtime = TailerRuntime.newRuntime(1, WaitStrategy.yielding());
+        store = newStore(runtime);
+        runtime.dispose();
+        StepVerifier.create(store.retrieveHistory())
+                .expectError(IllegalStateException.class)
+                .verify(Duration.ofMillis(500));
+    }
+
+    @Test
+    @DisplayName("tests that the subscriptions are terminated with an error when the runtime is disposed")
+    void shouldTerminateSubscriptionsOnDispose() {
+        runtime = TailerRuntime.newRuntime(1, WaitStrategy.yielding());
+        store = newStore(runtime);
+        store.store(FIRST);
+        StepVerifier.create(store.retrieveAll())
+                .expectNext(FIRST)
+                .then(runtime::dispose)
+                .expectError(IllegalStateException.class)
+                .verify(Duration.ofMillis(500));
+    }
+
+    @Test
+    @DisplayName("tests that a cancelled subscription receives no error when the runtime is disposed")
+    void shouldNotSignalErrorAfterCancel() {
+        runtime = TailerRuntime.newRuntime(1, WaitStrategy.yielding());
+        store = newStore(runtime);
+        store.store(FIRST);
+        List<Throwable> dropped = new CopyOnWriteArrayList<>();
+        Hooks.onErrorDropped(dropped::add);
+        try {
+            for (int i = 0; i < 100; i++) {
+                Disposable subscription = store.retrieveAll().subscribe();
+                subscription.dispose();
+            }
+            runtime.dispose();
+            assertEquals(Collections.emptyList(), dropped);
+        } finally {
+            Hooks.resetOnErrorDropped();
+        }
+    }
+
+    @Test
+    @DisplayName("tests that a consumer is released when its tailer cannot be created")
+    void shouldReleaseConsumerWhenTailerFails() {
+        runtime = TailerRuntime.newRuntime(1, WaitStrategy.yielding());
+        store = newStore(runtime);
+        store.close(); // the runtime outlives the store
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(store.retrieveAll("consumer"))
+                    .expectErrorSatisfies(e -> assertFalse(e.getMessage().contains("already subscribed")))
+                    .verify(Duration.ofMillis(500));
+        }
+    }
+
+    @Test
+    @DisplayName("tests that the parallel history is read by the threads of the runtime")
+    void shouldReadParallelHistoryWithRuntime() {
+        runtime = TailerRuntime.newRuntime(1, WaitStrategy.yielding());
+        store = newStore(runtime);
+        store.store(FIRST);
+        store.store(SECOND);
+
+        List<String> threads = store.retrieveHistoryParallel(4)
+                .map(v -> Thread.currentThread().getName())
+                .sequential()
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(Arrays.asList(runtime.name() + "-0", runtime.name() + "-0"), threads);
+    }
+}
@@ -0,0 +1,69 @@
+package ch.streamly.chronicle.flux.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class LogHistogramTest {
+
+    @Test
+    @DisplayName("tests that the percentiles are within the precision of the buckets")
+    void shouldComputePercentiles() {
+        LogHistogram histogram = new LogHistogram();
+        for (long i = 1; i <= 10_000; i++) {
+            histogram.record(i);
+        }
+        LogHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(10_000, snapshot.count());
+        assertEquals(5000.5, snapshot.mean(), 0.001);
+        assertEquals(10_000, snapshot.max());
+        assertWithinPrecision(5000, snapshot.percentile(50));
+        assertWithinPrecision(9900, snapshot.percentile(99));
+        assertEquals(10_000, snapshot.percentile(100));
+    }
+
+    @Test
+    @DisplayName("tests that each value is recorded in a bucket whose highest value is greater or equal")
+    void shouldRecordValuesInTheirBucket() {
+        long[] values = {0, 1, 7, 8, 9, 15, 16, 1000, 123_456_789, Long.MAX_VALUE};
+        for (long value : values) {
+            int bucket = LogHistogram.bucket(value);
+            assertTrue(LogHistogram.highestValue(bucket) >= value, "value " + value);
+            if (bucket > 0) {
+                assertTrue(LogHistogram.highestValue(bucket - 1) < value, "value " + value);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("tests that the values recorded concurrently are all counted")
+    void shouldRecordConcurrently() {
+        LogHistogram histogram = new LogHistogram();
+        IntStream.range(0, 100_000).parallel().forEach(histogram::record);
+        assertEquals(100_000, histogram.snapshot().count());
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().count());
+        assertEquals(0, histogram.snapshot().percentile(99));
+    }
+
+    @Test
+    @DisplayName("tests that the negative values are recorded as 0 and counted")
+    void shouldCountNegativeValues() {
+        LogHistogram histogram = new LogHistogram();
+        histogram.record(-5);
+        histogram.record(10);
+        assertEquals(2, histogram.count());
+        assertEquals(1, histogram.negativeCount());
+        assertEquals(0, histogram.snapshot().percentile(50));
+        histogram.reset();
+        assertEquals(0, histogram.negativeCount());
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected * 1.125, "expected about " + expected + " but got " + actual);
+    }
+}
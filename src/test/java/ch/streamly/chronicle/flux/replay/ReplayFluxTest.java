@@ -1,21 +1,37 @@
 package ch.streamly.chronicle.flux.replay;
 
 import static java.time.Duration.ofMillis;
+import static java.time.Duration.ofNanos;
 import static java.time.Duration.ofSeconds;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
 import ch.streamly.chronicle.flux.DummyObject;
+import ch.streamly.chronicle.flux.ValueMarshaller;
 import ch.streamly.domain.ReplayValue;
+import net.openhft.chronicle.bytes.Bytes;
 import reactor.core.Scannable;
 import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
 
 /**
  * @author mgabriel.
@@ -88,6 +104,495 @@ class ReplayFluxTest {
                 .verify(MILLIS_500);
     }
 
+    @Test
+    @DisplayName("tests that the flux is replayed with the original timing of nanosecond timestamps")
+    void shouldRespectNanosecondTiming() {
+        Flux<DummyObject> nanoSource = Flux.just(new DummyObject(1_000_000_000L, ONE),
+                new DummyObject(1_000_250_000L, TWO),
+                new DummyObject(1_000_250_500L, THREE));
+        ReplayFlux<DummyObject> nanoReplay = new ReplayFlux<>(nanoSource, DummyObject::timestamp, TimeUnit.NANOSECONDS);
+        StepVerifier.withVirtualTime(nanoReplay::withOriginalTiming)
+                .expectSubscription()
+                .assertNext(i -> assertEquals(ONE, i.value()))
+                .expectNoEvent(ofNanos(250_000))
+                .assertNext(i -> assertEquals(TWO, i.value()))
+                .expectNoEvent(ofNanos(500))
+                .assertNext(i -> assertEquals(THREE, i.value()))
+                .expectComplete()
+                .verify(MILLIS_500);
+    }
+
+    @Test
+    @DisplayName("tests that the values sharing a timestamp are emitted together")
+    void shouldEmitValuesWithSameTimestampTogether() {
+        Flux<DummyObject> burstSource = Flux.just(new DummyObject(10000, ONE),
+                new DummyObject(11000, TWO),
+                new DummyObject(11000, THREE),
+                new DummyObject(12000, FOUR));
+        StepVerifier.withVirtualTime(() -> new ReplayFlux<>(burstSource, DummyObject::timestamp).withOriginalTiming())
+                .expectSubscription()
+                .assertNext(i -> assertEquals(ONE, i.value()))
+                .expectNoEvent(ONE_SECOND)
+                .assertNext(i -> assertEquals(TWO, i.value()))
+                .assertNext(i -> assertEquals(THREE, i.value()))
+                .expectNoEvent(ONE_SECOND)
+                .assertNext(i -> assertEquals(FOUR, i.value()))
+                .expectComplete()
+                .verify(MILLIS_500);
+    }
+
+    @Test
+    @DisplayName("tests that the values are emitted at their original time even when they are requested late")
+    void shouldNotDriftWhenRequestedLate() {
+        StepVerifier.withVirtualTime(replayFlux::withOriginalTiming, 1)
+                .expectSubscription()
+                .assertNext(i -> assertEquals(ONE, i.value()))
+                .expectNoEvent(TWO_SECONDS)
+                .thenRequest(1)
+                .assertNext(i -> assertEquals(TWO, i.value()))
+                .thenRequest(2)
+                .assertNext(i -> assertEquals(THREE, i.value()))
+                .expectNoEvent(THREE_SECONDS)
+                .assertNext(i -> assertEquals(FOUR, i.value()))
+                .expectComplete()
+                .verify(MILLIS_500);
+    }
+
+    @Test
+    @DisplayName("tests that a replay can be paused, resumed and accelerated while it is running")
+    void shouldControlRunningReplay() {
+        VirtualTimeScheduler scheduler = VirtualTimeScheduler.getOrSet();
+        try {
+            ReplayController controller = new ReplayController();
+            List<String> values = new CopyOnWriteArrayList<>();
+            replayFlux.withController(controller).subscribe(v -> values.add(v.value()));
+            assertEquals(Collections.singletonList(ONE), values);
+
+            controller.pause();
+            scheduler.advanceTimeBy(THREE_SECONDS);
+            assertEquals(1, values.size());
+            assertTrue(controller.isPaused());
+
+            controller.resume();
+            scheduler.advanceTimeBy(ONE_SECOND);
+            assertEquals(Arrays.asList(ONE, TWO), values);
+            assertEquals(11000, controller.position());
+
+            controller.speed(2);
+            scheduler.advanceTimeBy(MILLIS_500);
+            assertEquals(Arrays.asList(ONE, TWO, THREE), values);
+            scheduler.advanceTimeBy(ONE_SECOND);
+            assertEquals(3, values.size());
+            scheduler.advanceTimeBy(MILLIS_500);
+            assertEquals(Arrays.asList(ONE, TWO, THREE, FOUR), values);
+        } finally {
+            VirtualTimeScheduler.reset();
+        }
+    }
+
+    @Test
+    @DisplayName("tests that a replay skips the values before the timestamp it is moved to")
+    void shouldSeekForward() {
+        VirtualTimeScheduler scheduler = VirtualTimeScheduler.getOrSet();
+        try {
+            ReplayController controller = new ReplayController();
+            List<String> values = new CopyOnWriteArrayList<>();
+            replayFlux.withController(controller).subscribe(v -> values.add(v.value()));
+
+            controller.seek(14000);
+            assertEquals(14000, controller.position());
+            scheduler.advanceTimeBy(ofMillis(999));
+            assertEquals(Collections.singletonList(ONE), values);
+            scheduler.advanceTimeBy(ofMillis(1));
+            assertEquals(Arrays.asList(ONE, FOUR), values);
+        } finally {
+            VirtualTimeScheduler.reset();
+        }
+    }
+
+    @Test
+    @DisplayName("tests that a replay moved backward reads the source again from its beginning")
+    void shouldSeekBackward() {
+        VirtualTimeScheduler scheduler = VirtualTimeScheduler.getOrSet();
+        try {
+            ReplayController controller = new ReplayController();
+            AtomicInteger subscriptions = new AtomicInteger();
+            List<String> values = new CopyOnWriteArrayList<>();
+            new ReplayFlux<>(source.doOnSubscribe(s -> subscriptions.incrementAndGet()), DummyObject::timestamp)
+                    .withController(controller)
+                    .subscribe(v -> values.add(v.value()));
+            scheduler.advanceTimeBy(ofMillis(2000));
+            assertEquals(Arrays.asList(ONE, TWO, THREE), values);
+
+            controller.seek(11000);
+            assertEquals(2, subscriptions.get());
+            assertEquals(11000, controller.position());
+            assertEquals(Arrays.asList(ONE, TWO, THREE, TWO), values);
+            scheduler.advanceTimeBy(ofMillis(1000));
+            assertEquals(Arrays.asList(ONE, TWO, THREE, TWO, THREE), values);
+        } finally {
+            VirtualTimeScheduler.reset();
+        }
+    }
+
+    @Test
+    @DisplayName("tests that a replay with a seek source reads the values from the timestamp it is moved to")
+    void shouldSeekWithSeekSource() {
+        VirtualTimeScheduler scheduler = VirtualTimeScheduler.getOrSet();
+        try {
+            ReplayController controller = new ReplayController();
+            List<Long> seeks = new CopyOnWriteArrayList<>();
+            List<String> values = new CopyOnWriteArrayList<>();
+            replayFlux.withSeekSource(timestamp -> {
+                seeks.add(timestamp);
+                return source.filter(v -> v.timestamp() >= timestamp);
+            }).withController(controller).subscribe(v -> values.add(v.value()));
+
+            controller.seek(12000);
+            assertEquals(Arrays.asList(ONE, THREE), values);
+            controller.seek(11000);
+            assertEquals(Arrays.asList(ONE, THREE, TWO), values);
+            assertEquals(Arrays.asList(12000L, 11000L), seeks);
+            scheduler.advanceTimeBy(ofMillis(1000));
+            assertEquals(Arrays.asList(ONE, THREE, TWO, THREE), values);
+        } finally {
+            VirtualTimeScheduler.reset();
+        }
+    }
+
+    @Test
+    @DisplayName("tests that the loops after the first one are replayed from an on-heap cache")
+    void shouldReplayLoopsFromHeapCache() {
+        verifyLoopSubscriptions(LoopCache.onHeap(10), 1);
+    }
+
+    @Test
+    @DisplayName("tests that the loops after the first one are replayed from an off-heap cache")
+    void shouldReplayLoopsFromOffHeapCache() {
+        verifyLoopSubscriptions(LoopCache.offHeap(1024, ValueMarshaller.fromByteArrays(DummyObject::toBinary,
+                DummyObject::fromBinary)), 1);
+    }
+
+    @Test
+    @DisplayName("tests that the loops are replayed from the source when the values do not fit in the cache")
+    void shouldReplayLoopsFromSourceWhenCacheIsFull() {
+        verifyLoopSubscriptions(LoopCache.onHeap(2), 3);
+    }
+
+    @Test
+    @DisplayName("tests that the memory of an off-heap cache is released when the cache is disposed")
+    void shouldReleaseOffHeapCacheOnDispose() {
+        OffHeapLoopCache<DummyObject> cache = new OffHeapLoopCache<>(1024,
+                ValueMarshaller.fromByteArrays(DummyObject::toBinary, DummyObject::fromBinary));
+        StepVerifier.create(replayFlux.withLoopCache(cache).inLoop().map(v -> v.value().value()).take(6)
+                .doFinally(signal -> cache.dispose()))
+                .expectNext(ONE, TWO, THREE, FOUR, ONE, TWO)
+                .expectComplete()
+                .verify(MILLIS_500);
+        assertTrue(cache.isDisposed());
+        assertEquals(null, cache.bytes());
+    }
+
+    @Test
+    @DisplayName("tests that a replay reading an off-heap cache completes when the cache is disposed")
+    void shouldReadOffHeapCacheWhileDisposed() {
+        OffHeapLoopCache<DummyObject> cache = new OffHeapLoopCache<>(1024,
+                ValueMarshaller.fromByteArrays(DummyObject::toBinary, DummyObject::fromBinary));
+        ReplayFlux<DummyObject> cached = replayFlux.withLoopCache(cache);
+        StepVerifier.create(cached).expectNextCount(4).expectComplete().verify(MILLIS_500);
+        Bytes<?> bytes = cache.bytes();
+
+        StepVerifier.create(cached.map(DummyObject::value), 1)
+                .expectNext(ONE)
+                .then(cache::dispose)
+                .thenRequest(Long.MAX_VALUE)
+                .expectNext(TWO, THREE, FOUR)
+                .expectComplete()
+                .verify(MILLIS_500);
+        assertEquals(0, bytes.refCount());
+        StepVerifier.create(cached).expectNextCount(4).expectComplete().verify(MILLIS_500);
+    }
+
+    private static void verifyLoopSubscriptions(LoopCache<DummyObject> cache, int expectedSubscriptions) {
+        AtomicInteger subscriptions = new AtomicInteger();
+        ReplayFlux<DummyObject> countingReplay = new ReplayFlux<>(source.doOnSubscribe(s -> subscriptions.incrementAndGet()),
+                DummyObject::timestamp);
+        StepVerifier.create(countingReplay.withLoopCache(cache).inLoop().map(v -> v.value().value()).take(12))
+                .expectNext(ONE, TWO, THREE, FOUR, ONE, TWO, THREE, FOUR, ONE, TWO, THREE, FOUR)
+                .expectComplete()
+                .verify(MILLIS_500);
+        assertEquals(expectedSubscriptions, subscriptions.get());
+    }
+
+    @Test
+    @DisplayName("tests that several sources are merged in time order, with the values of the same time in source order")
+    void shouldMergeSourcesInTimeOrder() {
+        Flux<DummyObject> first = Flux.just(new DummyObject(1, "a1"), new DummyObject(4, "a4"), new DummyObject(4, "a4bis"));
+        Flux<DummyObject> second = Flux.just(new DummyObject(2, "b2"), new DummyObject(4, "b4"), new DummyObject(9, "b9"));
+        Flux<DummyObject> third = Flux.just(new DummyObject(3, "c3"));
+        StepVerifier.create(ReplayFlux.merge(DummyObject::timestamp, first, Flux.empty(), second, third)
+                .map(DummyObject::value), 1)
+                .expectNext("a1")
+                .thenRequest(Long.MAX_VALUE)
+                .expectNext("b2", "c3", "a4", "a4bis", "b4", "b9")
+                .expectComplete()
+                .verify(MILLIS_500);
+    }
+
+    @Test
+    @DisplayName("tests that many sources are merged in time order with a small read-ahead")
+    void shouldMergeManySources() {
+        Random random = new Random(42);
+        List<Flux<Long>> sources = new ArrayList<>();
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            List<Long> times = new ArrayList<>();
+            long time = 0;
+            for (int j = 0; j < 500; j++) {
+                time += random.nextInt(100);
+                times.add(time);
+            }
+            expected.addAll(times);
+            sources.add(Flux.fromIterable(times).publishOn(Schedulers.parallel()));
+        }
+        Collections.sort(expected);
+        @SuppressWarnings("unchecked")
+        Flux<Long>[] sourceArray = sources.toArray(new Flux[0]);
+        List<Long> merged = ReplayFlux.merge(Long::longValue, TimeUnit.MILLISECONDS, 4, sourceArray)
+                .collectList()
+                .block(ONE_SECOND);
+        assertEquals(expected, merged);
+    }
+
+    @Test
+    @DisplayName("tests that the merge fails when a source fails")
+    void shouldPropagateMergedSourceError() {
+        StepVerifier.create(ReplayFlux.merge(DummyObject::timestamp, source, Flux.error(new IllegalStateException())))
+                .expectError(IllegalStateException.class)
+                .verify(MILLIS_500);
+    }
+
+    @Test
+    @DisplayName("tests that the values are read ahead of the demand, up to the maximum number of values")
+    void shouldReadAheadUpToMaxValues() {
+        AtomicInteger read = new AtomicInteger();
+        Flux<DummyObject> values = Flux.range(0, 1000).map(i -> new DummyObject(i, "v" + i)).doOnNext(v -> read.incrementAndGet());
+        StepVerifier.create(new ReplayFlux<>(values, DummyObject::timestamp).withReadAhead(100), 0)
+                .then(() -> assertEquals(100, read.get()))
+                .thenRequest(10)
+                .expectNextCount(10)
+                .then(() -> assertEquals(110, read.get()))
+                .thenRequest(Long.MAX_VALUE)
+                .expectNextCount(990)
+                .expectComplete()
+                .verify(MILLIS_500);
+    }
+
+    @Test
+    @DisplayName("tests that the values are read ahead up to the time horizon")
+    void shouldReadAheadUpToTimeHorizon() {
+        AtomicInteger read = new AtomicInteger();
+        Flux<DummyObject> values = Flux.range(0, 1000).map(i -> new DummyObject(i * 10, "v" + i)).doOnNext(v -> read.incrementAndGet());
+        StepVerifier.create(new ReplayFlux<>(values, DummyObject::timestamp).withReadAhead(ONE_SECOND, 500), 0)
+                .then(() -> assertTrue(read.get() > 100 && read.get() < 200, "read " + read.get()))
+                .thenRequest(50)
+                .expectNextCount(50)
+                .then(() -> assertTrue(read.get() > 150 && read.get() < 250, "read " + read.get()))
+                .thenCancel()
+                .verify(MILLIS_500);
+    }
+
+    @Test
+    @DisplayName("tests that the values read ahead are replayed with their original timing")
+    void shouldReplayValuesReadAheadWithOriginalTiming() {
+        StepVerifier.withVirtualTime(() -> replayFlux.withReadAhead(TWO_SECONDS, 2).withOriginalTiming())
+                .expectSubscription()
+                .assertNext(i -> assertEquals(ONE, i.value()))
+                .expectNoEvent(ONE_SECOND)
+                .assertNext(i -> assertEquals(TWO, i.value()))
+                .expectNoEvent(ONE_SECOND)
+                .assertNext(i -> assertEquals(THREE, i.value()))
+                .expectNoEvent(THREE_SECONDS)
+                .assertNext(i -> assertEquals(FOUR, i.value()))
+                .expectComplete()
+                .verify(MILLIS_500);
+    }
+
+    @Test
+    @DisplayName("tests that the read-ahead buffer holds at least one value")
+    void shouldReadAheadOnlyPositiveNumberOfValues() {
+        assertThrows(IllegalArgumentException.class, () -> replayFlux.withReadAhead(0));
+    }
+
+    @Test
+    @DisplayName("tests that out-of-order values within the lateness window are sorted by timestamp")
+    void shouldReorderValuesWithinLateness() {
+        Flux<DummyObject> outOfOrder = Flux.just(new DummyObject(100, "a"), new DummyObject(300, "c"),
+                new DummyObject(200, "b"), new DummyObject(300, "c2"), new DummyObject(250, "b2"),
+                new DummyObject(1000, "d"));
+        StepVerifier.create(new ReplayFlux<>(outOfOrder, DummyObject::timestamp)
+                .withReordering(ofMillis(200), 100)
+                .map(DummyObject::value), 1)
+                .expectNext("a")
+                .thenRequest(Long.MAX_VALUE)
+                .expectNext("b", "b2", "c", "c2", "d")
+                .expectComplete()
+                .verify(MILLIS_500);
+    }
+
+    @Test
+    @DisplayName("tests that the values arriving beyond the reorder window are dropped and reported")
+    void shouldReportValuesBeyondReorderWindow() {
+        Flux<DummyObject> outOfOrder = Flux.just(new DummyObject(100, "a"), new DummyObject(200, "b"),
+                new DummyObject(400, "c"), new DummyObject(150, "late"), new DummyObject(350, "c0"));
+        List<String> late = new ArrayList<>();
+        StepVerifier.create(new ReplayFlux<>(outOfOrder, DummyObject::timestamp)
+                .withReordering(ofMillis(100), 100, v -> late.add(v.value()))
+                .map(DummyObject::value))
+                .expectNext("a", "b", "c0", "c")
+                .expectComplete()
+                .verify(MILLIS_500);
+        assertEquals(Collections.singletonList("late"), late);
+    }
+
+    @Test
+    @DisplayName("tests that the reorder window is bounded by the maximum number of values")
+    void shouldBoundReorderWindowByCount() {
+        Flux<DummyObject> outOfOrder = Flux.just(new DummyObject(3, "c"), new DummyObject(2, "b"),
+                new DummyObject(1, "late"), new DummyObject(4, "d"));
+        List<String> late = new ArrayList<>();
+        StepVerifier.create(new ReplayFlux<>(outOfOrder, DummyObject::timestamp)
+                .withReordering(ofSeconds(10), 2, v -> late.add(v.value()))
+                .map(DummyObject::value))
+                .expectNext("b", "c", "d")
+                .expectComplete()
+                .verify(MILLIS_500);
+        assertEquals(Collections.singletonList("late"), late);
+    }
+
+    @Test
+    @DisplayName("tests that a large shuffled history is sorted with a small window")
+    void shouldReorderLargeHistory() {
+        Random random = new Random(7);
+        List<Long> times = new ArrayList<>();
+        for (long i = 0; i < 10_000; i++) {
+            times.add(i * 10 + random.nextInt(50));
+        }
+        List<Long> expected = new ArrayList<>(times);
+        Collections.sort(expected);
+        List<Long> sorted = new ReplayFlux<>(Flux.fromIterable(times), Long::longValue)
+                .withReordering(ofMillis(50), 16, v -> Assertions.fail("late value " + v))
+                .collectList()
+                .block(ONE_SECOND);
+        assertEquals(expected, sorted);
+    }
+
+    @Test
+    @DisplayName("tests that time-based operators follow the virtual time of the replay")
+    void shouldBufferInVirtualTime() {
+        ReplayScheduler scheduler = new ReplayScheduler();
+        StepVerifier.create(replayFlux.withVirtualTime(scheduler)
+                .buffer(ofMillis(1500), scheduler)
+                .map(values -> values.stream().map(DummyObject::value).collect(Collectors.toList())))
+                .expectNext(Arrays.asList(ONE, TWO))
+                .expectNext(Collections.singletonList(THREE))
+                .expectNext(Collections.singletonList(FOUR))
+                .expectComplete()
+                .verify(MILLIS_500);
+        assertEquals(15000, scheduler.now(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    @DisplayName("tests that a day of history is replayed in virtual time without waiting")
+    void shouldRunPeriodicTasksInVirtualTime() {
+        ReplayScheduler scheduler = new ReplayScheduler();
+        AtomicInteger ticks = new AtomicInteger();
+        scheduler.schedulePeriodically(ticks::incrementAndGet, 1, 1, TimeUnit.MINUTES);
+        long start = TimeUnit.DAYS.toMillis(17000);
+        Flux<DummyObject> day = Flux.just(new DummyObject(start, ONE), new DummyObject(start + TimeUnit.DAYS.toMillis(1), TWO));
+        new ReplayFlux<>(day, DummyObject::timestamp)
+                .withVirtualTime(scheduler)
+                .blockLast(ONE_SECOND);
+        assertEquals(1440, ticks.get());
+        assertEquals(start + TimeUnit.DAYS.toMillis(1), scheduler.now(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    @DisplayName("tests that the flux is replayed at a fixed rate, ignoring the original timing")
+    void shouldReplayAtFixedRate() {
+        StepVerifier.withVirtualTime(() -> replayFlux.withFixedRate(2))
+                .expectSubscription()
+                .assertNext(i -> assertEquals(ONE, i.value()))
+                .expectNoEvent(MILLIS_500)
+                .assertNext(i -> assertEquals(TWO, i.value()))
+                .expectNoEvent(MILLIS_500)
+                .assertNext(i -> assertEquals(THREE, i.value()))
+                .expectNoEvent(MILLIS_500)
+                .assertNext(i -> assertEquals(FOUR, i.value()))
+                .expectComplete()
+                .verify(MILLIS_500);
+    }
+
+    @Test
+    @DisplayName("tests that the values are emitted in batches at high rates")
+    void shouldReplayHighRateInBatches() {
+        VirtualTimeScheduler scheduler = VirtualTimeScheduler.getOrSet();
+        try {
+            AtomicInteger count = new AtomicInteger();
+            new ReplayFlux<>(Flux.range(0, 1000).map(i -> new DummyObject(0, "v" + i)), DummyObject::timestamp)
+                    .withFixedRate(10_000)
+                    .subscribe(v -> count.incrementAndGet());
+            assertEquals(1, count.get());
+            scheduler.advanceTimeBy(ofMillis(1));
+            assertEquals(11, count.get());
+            scheduler.advanceTimeBy(ofMillis(49));
+            assertEquals(501, count.get());
+            scheduler.advanceTimeBy(ofMillis(50));
+            assertEquals(1000, count.get());
+        } finally {
+            VirtualTimeScheduler.reset();
+        }
+    }
+
+    @Test
+    @DisplayName("tests that the flux is replayed with the rate of steps followed by a ramp")
+    void shouldReplayWithLoadProfile() {
+        VirtualTimeScheduler scheduler = VirtualTimeScheduler.getOrSet();
+        try {
+            LoadProfile profile = LoadProfile.newBuilder()
+                    .steps(1000, 1000, 2, ofMillis(100))
+                    .ramp(2000, 4000, ofMillis(100))
+                    .build();
+            AtomicInteger count = new AtomicInteger();
+            ReplayThroughput throughput = new ReplayThroughput();
+            new ReplayFlux<>(Flux.range(0, 10_000).map(i -> new DummyObject(0, "v" + i)), DummyObject::timestamp)
+                    .withLoadProfile(profile, throughput)
+                    .subscribe(v -> count.incrementAndGet());
+            scheduler.advanceTimeBy(ofMillis(100));
+            assertEquals(101, count.get());
+            scheduler.advanceTimeBy(ofMillis(100));
+            assertEquals(301, count.get());
+            scheduler.advanceTimeBy(ofMillis(100));
+            assertEquals(601, count.get());
+            scheduler.advanceTimeBy(ofMillis(100));
+            assertEquals(1001, count.get());
+            assertEquals(1001, throughput.count());
+        } finally {
+            VirtualTimeScheduler.reset();
+        }
+    }
+
+    @Test
+    @DisplayName("tests that the throughput of a replay at maximum speed is measured")
+    void shouldMeasureMaxSpeedThroughput() {
+        ReplayThroughput throughput = new ReplayThroughput();
+        new ReplayFlux<>(Flux.range(0, 1000).map(i -> new DummyObject(i, "v" + i)), DummyObject::timestamp)
+                .withMaxSpeed(throughput)
+                .blockLast(ONE_SECOND);
+        assertEquals(1000, throughput.count());
+        assertTrue(throughput.eventsPerSecond() > 0);
+    }
+
     @Test
     @DisplayName("tests that the flux is replayed in a loop")
     void shouldReplayInLoop() {